@@ -0,0 +1,114 @@
+package dev.rosewood.rosestacker.engine;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares searching a section bucket by reading the position of every candidate object, which is what the entity cache
+ * did before buckets kept packed positions, against searching the packed positions with and without the Vector API.
+ * The area is a merge radius of 5 around the middle of a 16x16x16 section, so about a quarter of the candidates match.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class PackedPositionsBenchmark {
+
+    private static final double MIN = 3, MAX = 13;
+
+    @Param({ "16", "64", "256", "1024" })
+    public int size;
+
+    private Candidate[] candidates;
+    private double[] xs, ys, zs;
+    private int[] indices;
+    private AreaFilter scalarFilter, vectorFilter;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        this.candidates = new Candidate[this.size];
+        this.xs = new double[this.size];
+        this.ys = new double[this.size];
+        this.zs = new double[this.size];
+        this.indices = new int[this.size];
+
+        // Entities are allocated over the life of the server, keep the candidates from sitting next to each other
+        List<Integer> order = IntStream.range(0, this.size).boxed().collect(Collectors.toList());
+        Collections.shuffle(order, random);
+        for (int i : order) {
+            double x = random.nextDouble() * 16, y = random.nextDouble() * 16, z = random.nextDouble() * 16;
+            this.candidates[i] = new Candidate(x, y, z);
+            this.xs[i] = x;
+            this.ys[i] = y;
+            this.zs[i] = z;
+        }
+
+        this.scalarFilter = new ScalarAreaFilter();
+        this.vectorFilter = PackedPositions.isVectorized() ? new VectorAreaFilter() : this.scalarFilter;
+    }
+
+    @Benchmark
+    public int objectPositions() {
+        int count = 0;
+        for (int i = 0; i < this.size; i++) {
+            Candidate candidate = this.candidates[i];
+            if (candidate.getX() >= MIN && candidate.getX() < MAX && candidate.getY() >= MIN && candidate.getY() < MAX && candidate.getZ() >= MIN && candidate.getZ() < MAX)
+                this.indices[count++] = i;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int packedScalar() {
+        return this.scalarFilter.filter(this.xs, this.ys, this.zs, this.size, MIN, MIN, MIN, MAX, MAX, MAX, this.indices);
+    }
+
+    @Benchmark
+    public int packedVector() {
+        return this.vectorFilter.filter(this.xs, this.ys, this.zs, this.size, MIN, MIN, MIN, MAX, MAX, MAX, this.indices);
+    }
+
+    /**
+     * Stands in for an entity, the position sits behind a reference like it does for a server entity
+     */
+    private static final class Candidate {
+
+        private final double[] position;
+
+        private Candidate(double x, double y, double z) {
+            this.position = new double[] { x, y, z };
+        }
+
+        private double getX() {
+            return this.position[0];
+        }
+
+        private double getY() {
+            return this.position[1];
+        }
+
+        private double getZ() {
+            return this.position[2];
+        }
+
+    }
+
+}
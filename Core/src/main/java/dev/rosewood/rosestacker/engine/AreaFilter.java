@@ -0,0 +1,27 @@
+package dev.rosewood.rosestacker.engine;
+
+/**
+ * Finds which of a set of packed positions are within an area
+ */
+interface AreaFilter {
+
+    /**
+     * Writes the index of every position within the area to the indices array, in ascending order.
+     * Minimums are inclusive and maximums are exclusive.
+     *
+     * @param xs The x coordinates
+     * @param ys The y coordinates
+     * @param zs The z coordinates
+     * @param size The number of positions to check, starting from index 0
+     * @param minX The minimum x coordinate of the area
+     * @param minY The minimum y coordinate of the area
+     * @param minZ The minimum z coordinate of the area
+     * @param maxX The maximum x coordinate of the area
+     * @param maxY The maximum y coordinate of the area
+     * @param maxZ The maximum z coordinate of the area
+     * @param indices The array to write the indices to, at least size long
+     * @return the number of indices written
+     */
+    int filter(double[] xs, double[] ys, double[] zs, int size, double minX, double minY, double minZ, double maxX, double maxY, double maxZ, int[] indices);
+
+}
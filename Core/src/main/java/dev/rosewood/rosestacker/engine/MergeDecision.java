@@ -0,0 +1,13 @@
+package dev.rosewood.rosestacker.engine;
+
+import java.util.List;
+
+/**
+ * A decision to merge stacks into a target stack
+ *
+ * @param target The stack that the others are merged into
+ * @param sources The stacks to merge into the target, never includes the target
+ */
+public record MergeDecision(StackView target, List<StackView> sources) {
+
+}
@@ -0,0 +1,145 @@
+package dev.rosewood.rosestacker.engine;
+
+import java.util.Arrays;
+
+/**
+ * Stores values alongside their x, y, and z coordinates in separate packed arrays, so an area can be searched without
+ * reading the position of each value through its object.
+ * An instance is never modified once it can be seen by other threads. Appending shares the arrays of the instance it
+ * appends to whenever they have room left, so a series of appends costs the same as filling a single array list.
+ * Appending must be serialized by the caller.
+ * Searches use the incubating Vector API when the server was started with {@code --add-modules jdk.incubator.vector},
+ * and check one position at a time otherwise.
+ *
+ * @param <T> The type of value
+ */
+public final class PackedPositions<T> {
+
+    private static final int INITIAL_CAPACITY = 8;
+    private static final AreaFilter FILTER = createFilter();
+    private static final PackedPositions<?> EMPTY = new PackedPositions<>(new Storage(0), 0);
+
+    private final Storage storage;
+    private final int size;
+
+    private PackedPositions(Storage storage, int size) {
+        this.storage = storage;
+        this.size = size;
+    }
+
+    /**
+     * @param <T> The type of value
+     * @return an instance without any values
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> PackedPositions<T> empty() {
+        return (PackedPositions<T>) EMPTY;
+    }
+
+    /**
+     * Gets an instance with a value appended, this instance is left unchanged
+     *
+     * @param value The value
+     * @param x The x coordinate of the value
+     * @param y The y coordinate of the value
+     * @param z The z coordinate of the value
+     * @return an instance with the values of this one followed by the new value
+     */
+    public PackedPositions<T> with(T value, double x, double y, double z) {
+        Storage storage = this.storage;
+        if (storage.used != this.size || this.size == storage.values.length) {
+            // Another instance already appended to these arrays, or they are full
+            storage = storage.copy(this.size, Math.max(INITIAL_CAPACITY, this.size * 2));
+        }
+
+        storage.values[this.size] = value;
+        storage.xs[this.size] = x;
+        storage.ys[this.size] = y;
+        storage.zs[this.size] = z;
+        storage.used = this.size + 1;
+        return new PackedPositions<>(storage, this.size + 1);
+    }
+
+    /**
+     * @return the number of values
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @param index The index of the value, from 0 inclusive to {@link #size()} exclusive
+     * @return the value at the index
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        return (T) this.storage.values[index];
+    }
+
+    /**
+     * Finds the values positioned within an area. Minimums are inclusive and maximums are exclusive.
+     *
+     * @param minX The minimum x coordinate of the area
+     * @param minY The minimum y coordinate of the area
+     * @param minZ The minimum z coordinate of the area
+     * @param maxX The maximum x coordinate of the area
+     * @param maxY The maximum y coordinate of the area
+     * @param maxZ The maximum z coordinate of the area
+     * @param indices The array to write the index of each value found to in ascending order, at least {@link #size()}
+     * long
+     * @return the number of values found
+     */
+    public int filter(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, int[] indices) {
+        Storage storage = this.storage;
+        return FILTER.filter(storage.xs, storage.ys, storage.zs, this.size, minX, minY, minZ, maxX, maxY, maxZ, indices);
+    }
+
+    /**
+     * @return true if searches use the Vector API
+     */
+    public static boolean isVectorized() {
+        return FILTER instanceof VectorAreaFilter;
+    }
+
+    private static AreaFilter createFilter() {
+        // Only touch the vector filter if the module is there, otherwise loading it fails
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                if (VectorAreaFilter.isAccelerated())
+                    return new VectorAreaFilter();
+            } catch (LinkageError ignored) { }
+        }
+        return new ScalarAreaFilter();
+    }
+
+    /**
+     * The arrays shared by every instance appended from the same first value
+     */
+    private static final class Storage {
+
+        private final Object[] values;
+        private final double[] xs, ys, zs;
+        private int used;
+
+        private Storage(int capacity) {
+            this.values = new Object[capacity];
+            this.xs = new double[capacity];
+            this.ys = new double[capacity];
+            this.zs = new double[capacity];
+        }
+
+        private Storage(Object[] values, double[] xs, double[] ys, double[] zs, int used) {
+            this.values = values;
+            this.xs = xs;
+            this.ys = ys;
+            this.zs = zs;
+            this.used = used;
+        }
+
+        private Storage copy(int size, int capacity) {
+            return new Storage(Arrays.copyOf(this.values, capacity), Arrays.copyOf(this.xs, capacity), Arrays.copyOf(this.ys, capacity), Arrays.copyOf(this.zs, capacity), size);
+        }
+
+    }
+
+}
@@ -0,0 +1,19 @@
+package dev.rosewood.rosestacker.engine;
+
+/**
+ * Checks packed positions one at a time, used when the Vector API is not available
+ */
+final class ScalarAreaFilter implements AreaFilter {
+
+    @Override
+    public int filter(double[] xs, double[] ys, double[] zs, int size, double minX, double minY, double minZ, double maxX, double maxY, double maxZ, int[] indices) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            double x = xs[i], y = ys[i], z = zs[i];
+            if (x >= minX && x < maxX && y >= minY && y < maxY && z >= minZ && z < maxZ)
+                indices[count++] = i;
+        }
+        return count;
+    }
+
+}
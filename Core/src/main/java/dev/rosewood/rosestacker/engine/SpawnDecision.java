@@ -0,0 +1,18 @@
+package dev.rosewood.rosestacker.engine;
+
+/**
+ * A decision on where to put some of the entities of a spawn
+ *
+ * @param target The existing stack to add the entities to, or null to spawn a new stack holding them
+ * @param amount The number of entities
+ */
+public record SpawnDecision(StackView target, int amount) {
+
+    /**
+     * @return true if the entities should be spawned as a new stack
+     */
+    public boolean isNewStack() {
+        return this.target == null;
+    }
+
+}
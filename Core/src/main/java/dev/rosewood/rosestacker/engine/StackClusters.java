@@ -0,0 +1,121 @@
+package dev.rosewood.rosestacker.engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+/**
+ * Groups stacks into clusters that can merge together using union-find over neighbouring stacks.
+ * Stacks are bucketed into a grid so each stack is only compared against stacks in neighbouring cells, and pairs that
+ * are already in the same cluster are never compared, so a dense cluster costs close to one compatibility check per
+ * stack instead of one per pair.
+ */
+public final class StackClusters<T> {
+
+    private final List<T> stacks;
+    private final List<double[]> positions;
+
+    public StackClusters() {
+        this.stacks = new ArrayList<>();
+        this.positions = new ArrayList<>();
+    }
+
+    /**
+     * Adds a stack to be clustered
+     *
+     * @param stack The stack
+     * @param x The x position of the stack
+     * @param y The y position of the stack
+     * @param z The z position of the stack
+     */
+    public void add(T stack, double x, double y, double z) {
+        this.stacks.add(stack);
+        this.positions.add(new double[] { x, y, z });
+    }
+
+    /**
+     * Builds the clusters of the added stacks
+     *
+     * @param radius How close two stacks need to be on each axis to merge, ignored if entireChunk is true
+     * @param entireChunk true if any two stacks within the same chunk can merge regardless of distance
+     * @param canMerge Tests if two stacks are able to merge with each other
+     * @return the clusters that contain more than one stack
+     */
+    public Collection<List<T>> build(double radius, boolean entireChunk, BiPredicate<T, T> canMerge) {
+        int size = this.stacks.size();
+        int[] parents = new int[size];
+        for (int i = 0; i < size; i++)
+            parents[i] = i;
+
+        double cellSize = Math.max(radius, 1);
+        Map<Long, List<Integer>> cells = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            double[] position = this.positions.get(i);
+            int cellX, cellY, cellZ;
+            if (entireChunk) {
+                cellX = (int) Math.floor(position[0]) >> 4;
+                cellY = 0;
+                cellZ = (int) Math.floor(position[2]) >> 4;
+            } else {
+                cellX = (int) Math.floor(position[0] / cellSize);
+                cellY = (int) Math.floor(position[1] / cellSize);
+                cellZ = (int) Math.floor(position[2] / cellSize);
+            }
+
+            // Only compare against stacks added before this one, each pair is checked at most once
+            int range = entireChunk ? 0 : 1;
+            for (int dx = -range; dx <= range; dx++) {
+                for (int dy = -range; dy <= range; dy++) {
+                    for (int dz = -range; dz <= range; dz++) {
+                        List<Integer> cell = cells.get(cellKey(cellX + dx, cellY + dy, cellZ + dz));
+                        if (cell == null)
+                            continue;
+
+                        for (int j : cell) {
+                            int rootI = find(parents, i);
+                            int rootJ = find(parents, j);
+                            if (rootI == rootJ)
+                                continue;
+
+                            if (!entireChunk && !this.isWithin(position, this.positions.get(j), radius))
+                                continue;
+
+                            if (canMerge.test(this.stacks.get(i), this.stacks.get(j)))
+                                parents[rootI] = rootJ;
+                        }
+                    }
+                }
+            }
+
+            cells.computeIfAbsent(cellKey(cellX, cellY, cellZ), x -> new ArrayList<>()).add(i);
+        }
+
+        Map<Integer, List<T>> clusters = new HashMap<>();
+        for (int i = 0; i < size; i++)
+            clusters.computeIfAbsent(find(parents, i), x -> new ArrayList<>()).add(this.stacks.get(i));
+        clusters.values().removeIf(x -> x.size() < 2);
+        return clusters.values();
+    }
+
+    private boolean isWithin(double[] position1, double[] position2, double radius) {
+        return Math.abs(position1[0] - position2[0]) <= radius
+                && Math.abs(position1[1] - position2[1]) <= radius
+                && Math.abs(position1[2] - position2[2]) <= radius;
+    }
+
+    private static int find(int[] parents, int index) {
+        while (parents[index] != index) {
+            parents[index] = parents[parents[index]]; // Path halving
+            index = parents[index];
+        }
+        return index;
+    }
+
+    private static long cellKey(int x, int y, int z) {
+        return ((long) x & 0x1FFFFF) << 42 | ((long) y & 0x1FFFFF) << 21 | ((long) z & 0x1FFFFF);
+    }
+
+}
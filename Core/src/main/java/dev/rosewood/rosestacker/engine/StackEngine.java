@@ -0,0 +1,228 @@
+package dev.rosewood.rosestacker.engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * Decides which stacks merge, unstack and take in spawned entities, using nothing but the state in each
+ * {@link StackView}. The engine doesn't change anything itself, it is up to the caller to apply its decisions.
+ * Checks that can't be expressed through the view, such as comparing two entities in detail, are passed in as a
+ * compatibility test.
+ */
+public class StackEngine {
+
+    private final IntFunction<TypeRules> rules;
+
+    /**
+     * @param rules Gets the rules of a type of stack, or null if the type has no rules and is left alone
+     */
+    public StackEngine(IntFunction<TypeRules> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Decides which stacks should merge together.
+     * Stacks are grouped into clusters of stacks that can merge, then each cluster is merged into its preferred stack
+     * for as long as the target stays within the maximum stack size.
+     *
+     * @param stacks The stacks to consider, of any type
+     * @param preference Orders stacks by how much they are preferred as a merge target, the greatest is picked
+     * @param compatible Tests if two stacks of the same type can merge
+     * @return the merges to make
+     */
+    public List<MergeDecision> planMerges(Collection<StackView> stacks, Comparator<StackView> preference, BiPredicate<StackView, StackView> compatible) {
+        return this.planMerges(stacks, preference, compatible, cluster -> { });
+    }
+
+    /**
+     * Decides which stacks should merge together, and reports the clusters that shouldn't.
+     * Together with the decisions returned, every stack of a type that stacks ends up in exactly one cluster.
+     *
+     * @param stacks The stacks to consider, of any type
+     * @param preference Orders stacks by how much they are preferred as a merge target, the greatest is picked
+     * @param compatible Tests if two stacks of the same type can merge
+     * @param unmerged Receives each cluster that shouldn't merge, including stacks that are in a cluster of their own
+     * @return the merges to make
+     * @see #planMerges(Collection, Comparator, BiPredicate)
+     */
+    public List<MergeDecision> planMerges(Collection<StackView> stacks, Comparator<StackView> preference, BiPredicate<StackView, StackView> compatible, Consumer<List<StackView>> unmerged) {
+        Map<Integer, List<StackView>> stacksByType = new HashMap<>();
+        for (StackView stack : stacks)
+            if (!stack.hasFlag(StackView.UNSTACKABLE))
+                stacksByType.computeIfAbsent(stack.type(), x -> new ArrayList<>()).add(stack);
+
+        List<MergeDecision> decisions = new ArrayList<>();
+        for (List<StackView> typeStacks : stacksByType.values()) {
+            TypeRules rules = this.rules.apply(typeStacks.get(0).type());
+            if (rules == null || !rules.stackingEnabled())
+                continue;
+
+            if (typeStacks.size() < 2) {
+                unmerged.accept(typeStacks);
+                continue;
+            }
+
+            StackClusters<StackView> clusters = new StackClusters<>();
+            for (StackView stack : typeStacks)
+                clusters.add(stack, stack.x(), stack.y(), stack.z());
+
+            BiPredicate<StackView, StackView> canMerge = (stack1, stack2) -> stack1.size() + stack2.size() <= rules.maxStackSize()
+                    && compatible.test(stack1, stack2);
+
+            Set<StackView> clustered = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (List<StackView> cluster : clusters.build(rules.mergeRadius(), rules.entireChunk(), canMerge)) {
+                clustered.addAll(cluster);
+                StackView target = cluster.stream().max(preference).orElseThrow();
+                int totalSize = target.size();
+                List<StackView> sources = new ArrayList<>();
+                for (StackView other : cluster) {
+                    if (other == target || totalSize + other.size() > rules.maxStackSize() || !canMerge.test(target, other))
+                        continue;
+
+                    totalSize += other.size();
+                    sources.add(other);
+                }
+
+                if (!sources.isEmpty() && totalSize >= rules.minStackSize()) {
+                    decisions.add(new MergeDecision(target, sources));
+                } else {
+                    unmerged.accept(cluster);
+                }
+            }
+
+            // Stacks without anything to merge with aren't part of any cluster that was built
+            for (StackView stack : typeStacks)
+                if (!clustered.contains(stack))
+                    unmerged.accept(List.of(stack));
+        }
+        return decisions;
+    }
+
+    /**
+     * Decides which of the stacks around a single stack it should merge with.
+     * Unlike {@link #planMerges}, only stacks that are compatible with the seed itself are considered, so a merge never
+     * reaches past the neighbours of the seed. They are merged into the preferred stack for as long as the target stays
+     * within the maximum stack size.
+     *
+     * @param seed The stack the merge is started from
+     * @param nearby The stacks around the seed, the seed itself and stacks of other types are skipped
+     * @param preference Orders stacks by how much they are preferred as a merge target, the greatest is picked
+     * @param compatible Tests if the seed can merge with another stack of the same type
+     * @return the merge to make, or null if the seed shouldn't merge
+     */
+    public MergeDecision planMerge(StackView seed, Collection<StackView> nearby, Comparator<StackView> preference, BiPredicate<StackView, StackView> compatible) {
+        TypeRules rules = this.rules.apply(seed.type());
+        if (rules == null || !rules.stackingEnabled() || seed.hasFlag(StackView.UNSTACKABLE))
+            return null;
+
+        List<StackView> group = new ArrayList<>();
+        group.add(seed);
+        for (StackView other : nearby)
+            if (other.id() != seed.id() && other.type() == seed.type() && !other.hasFlag(StackView.UNSTACKABLE) && compatible.test(seed, other))
+                group.add(other);
+
+        StackView target = group.stream().max(preference).orElseThrow();
+        int totalSize = target.size();
+        List<StackView> sources = new ArrayList<>();
+        for (StackView other : group) {
+            if (other == target || totalSize + other.size() > rules.maxStackSize())
+                continue;
+
+            totalSize += other.size();
+            sources.add(other);
+        }
+
+        if (sources.isEmpty() || totalSize < rules.minStackSize())
+            return null;
+        return new MergeDecision(target, sources);
+    }
+
+    /**
+     * Decides what should happen to a stack that is checked for unstacking.
+     * Stacks of types that have stacking disabled are still checked, they may have been stacked before it was disabled.
+     * A stack that no longer belongs together is split first, one that does but has fallen below the minimum stack size
+     * of its type is dissolved if its type allows that.
+     *
+     * @param stack The stack
+     * @param staysStacked Tests if the entities in a stack still belong together, not called for single entities
+     * @return the decision
+     */
+    public UnstackDecision planUnstack(StackView stack, Predicate<StackView> staysStacked) {
+        if (stack.size() <= 1)
+            return UnstackDecision.KEEP;
+
+        if (!staysStacked.test(stack))
+            return UnstackDecision.SPLIT;
+
+        TypeRules rules = this.rules.apply(stack.type());
+        if (rules != null && rules.dissolveBelowMinimum() && stack.size() < rules.minStackSize())
+            return UnstackDecision.DISSOLVE;
+
+        return UnstackDecision.KEEP;
+    }
+
+    /**
+     * Decides how to spread spawned entities over the stacks around them.
+     * Nearby stacks that are compatible with the spawned entities are filled up first, then whatever is left is put
+     * into new stacks. New stacks are filled up to the maximum stack size if a new stack can take in more entities,
+     * otherwise every remaining entity gets a stack of its own.
+     *
+     * @param type The type of the spawned entities
+     * @param amount The number of entities spawned
+     * @param nearby The stacks around the spawn
+     * @param compatible Tests if an existing stack can take in the given number of the spawned entities
+     * @param newStacksCompatible Tests if a new stack of one spawned entity can take in more of them, only called if
+     *                            new stacks are needed
+     * @return where to put the entities, the amounts add up to the amount spawned
+     */
+    public List<SpawnDecision> planSpawns(int type, int amount, Collection<StackView> nearby, BiPredicate<StackView, Integer> compatible, BooleanSupplier newStacksCompatible) {
+        List<SpawnDecision> decisions = new ArrayList<>();
+        TypeRules rules = this.rules.apply(type);
+        if (rules == null || !rules.stackingEnabled()) {
+            for (int i = 0; i < amount; i++)
+                decisions.add(new SpawnDecision(null, 1));
+            return decisions;
+        }
+
+        int remaining = amount;
+        for (StackView stack : nearby) {
+            if (remaining <= 0)
+                break;
+
+            if (stack.type() != type || stack.hasFlag(StackView.UNSTACKABLE))
+                continue;
+
+            int space = rules.maxStackSize() - stack.size();
+            if (space <= 0 || !compatible.test(stack, Math.min(space, remaining)))
+                continue;
+
+            int added = Math.min(space, remaining);
+            decisions.add(new SpawnDecision(stack, added));
+            remaining -= added;
+        }
+
+        if (remaining <= 0)
+            return decisions;
+
+        int newStackSize = newStacksCompatible.getAsBoolean() ? Math.max(1, rules.maxStackSize()) : 1;
+        while (remaining > 0) {
+            int added = Math.min(newStackSize, remaining);
+            decisions.add(new SpawnDecision(null, added));
+            remaining -= added;
+        }
+        return decisions;
+    }
+
+}
@@ -0,0 +1,29 @@
+package dev.rosewood.rosestacker.engine;
+
+/**
+ * The state of a stack that the engine makes its decisions from, independent of the server the stack lives on
+ *
+ * @param id A number that identifies the stack, unique among the stacks given to the engine at once
+ * @param type The type of the stack, stacks can only merge with stacks of the same type
+ * @param x The x position of the stack
+ * @param y The y position of the stack
+ * @param z The z position of the stack
+ * @param size The number of entities in the stack
+ * @param flags Any of {@link #UNSTACKABLE}
+ */
+public record StackView(int id, int type, double x, double y, double z, int size, int flags) {
+
+    /**
+     * The stack must not merge with any other stack
+     */
+    public static final int UNSTACKABLE = 1;
+
+    /**
+     * @param flag The flag to check
+     * @return true if the flag is set
+     */
+    public boolean hasFlag(int flag) {
+        return (this.flags & flag) != 0;
+    }
+
+}
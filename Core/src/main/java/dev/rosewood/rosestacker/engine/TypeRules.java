@@ -0,0 +1,16 @@
+package dev.rosewood.rosestacker.engine;
+
+/**
+ * The stacking rules of a type of stack
+ *
+ * @param stackingEnabled true if stacks of the type merge and take in spawned entities, false if they are only checked
+ *                        for unstacking
+ * @param minStackSize The smallest size a merge has to reach to happen
+ * @param maxStackSize The largest size a stack can reach
+ * @param mergeRadius How close two stacks need to be on each axis to merge
+ * @param entireChunk true if any two stacks within the same chunk can merge regardless of distance
+ * @param dissolveBelowMinimum true if stacks smaller than the minimum size should be dissolved into single entities
+ */
+public record TypeRules(boolean stackingEnabled, int minStackSize, int maxStackSize, double mergeRadius, boolean entireChunk, boolean dissolveBelowMinimum) {
+
+}
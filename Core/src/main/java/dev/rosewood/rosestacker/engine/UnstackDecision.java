@@ -0,0 +1,23 @@
+package dev.rosewood.rosestacker.engine;
+
+/**
+ * What should happen to a stack when it is checked for unstacking
+ */
+public enum UnstackDecision {
+
+    /**
+     * The stack stays as it is
+     */
+    KEEP,
+
+    /**
+     * One entity should be split off of the stack
+     */
+    SPLIT,
+
+    /**
+     * Every entity in the stack should be split off into its own stack
+     */
+    DISSOLVE
+
+}
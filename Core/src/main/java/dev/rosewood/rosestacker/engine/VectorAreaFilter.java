@@ -0,0 +1,59 @@
+package dev.rosewood.rosestacker.engine;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Checks as many packed positions per instruction as the CPU allows using the incubating Vector API.
+ * Only load this class after checking that the jdk.incubator.vector module is present, see {@link PackedPositions}.
+ */
+final class VectorAreaFilter implements AreaFilter {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    /**
+     * @return true if the CPU can check more than one position per instruction
+     */
+    static boolean isAccelerated() {
+        return SPECIES.length() > 1;
+    }
+
+    @Override
+    public int filter(double[] xs, double[] ys, double[] zs, int size, double minX, double minY, double minZ, double maxX, double maxY, double maxZ, int[] indices) {
+        int count = 0;
+        int lanes = SPECIES.length();
+        int bound = SPECIES.loopBound(size);
+        int i = 0;
+        for (; i < bound; i += lanes) {
+            DoubleVector x = DoubleVector.fromArray(SPECIES, xs, i);
+            DoubleVector y = DoubleVector.fromArray(SPECIES, ys, i);
+            DoubleVector z = DoubleVector.fromArray(SPECIES, zs, i);
+            VectorMask<Double> mask = x.compare(VectorOperators.GE, minX)
+                    .and(x.compare(VectorOperators.LT, maxX))
+                    .and(y.compare(VectorOperators.GE, minY))
+                    .and(y.compare(VectorOperators.LT, maxY))
+                    .and(z.compare(VectorOperators.GE, minZ))
+                    .and(z.compare(VectorOperators.LT, maxZ));
+
+            if (!mask.anyTrue())
+                continue;
+
+            long bits = mask.toLong();
+            while (bits != 0) {
+                indices[count++] = i + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+
+        // Check the positions that don't fill a whole vector one at a time
+        for (; i < size; i++) {
+            double x = xs[i], y = ys[i], z = zs[i];
+            if (x >= minX && x < maxX && y >= minY && y < maxY && z >= minZ && z < maxZ)
+                indices[count++] = i;
+        }
+        return count;
+    }
+
+}
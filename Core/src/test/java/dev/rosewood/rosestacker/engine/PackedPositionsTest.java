@@ -0,0 +1,88 @@
+package dev.rosewood.rosestacker.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class PackedPositionsTest {
+
+    @Test
+    public void filterFindsPositionsWithinTheArea() {
+        PackedPositions<String> positions = PackedPositions.<String>empty()
+                .with("inside", 1, 1, 1)
+                .with("outside", 5, 1, 1)
+                .with("minimum", 0, 0, 0)
+                .with("maximum", 2, 2, 2);
+
+        assertEquals(List.of("inside", "minimum"), found(positions, 0, 0, 0, 2, 2, 2));
+    }
+
+    @Test
+    public void appendingToAnOlderInstanceLeavesNewerOnesUnchanged() {
+        PackedPositions<String> base = PackedPositions.<String>empty().with("a", 0, 0, 0);
+        PackedPositions<String> first = base.with("b", 0, 0, 0);
+        PackedPositions<String> second = base.with("c", 0, 0, 0);
+
+        assertEquals(1, base.size());
+        assertEquals("b", first.get(1));
+        assertEquals("c", second.get(1));
+        assertEquals(List.of("a", "b"), found(first, -1, -1, -1, 1, 1, 1));
+    }
+
+    @Test
+    public void appendingGrowsPastTheInitialCapacity() {
+        PackedPositions<Integer> positions = PackedPositions.empty();
+        for (int i = 0; i < 100; i++)
+            positions = positions.with(i, i, 0, 0);
+
+        assertEquals(100, positions.size());
+        assertEquals(List.of(10, 11, 12), found(positions, 10, 0, 0, 13, 1, 1));
+    }
+
+    @Test
+    public void vectorAndScalarFiltersAgree() {
+        if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent() || !VectorAreaFilter.isAccelerated())
+            return;
+
+        AreaFilter scalar = new ScalarAreaFilter();
+        AreaFilter vector = new VectorAreaFilter();
+        Random random = new Random(42);
+        for (int size = 0; size < 70; size++) {
+            double[] xs = new double[size], ys = new double[size], zs = new double[size];
+            for (int i = 0; i < size; i++) {
+                // Whole numbers land on the edges of the area often enough to check the bounds
+                xs[i] = random.nextInt(8) - 4;
+                ys[i] = random.nextInt(8) - 4 + (random.nextBoolean() ? 0.5 : 0);
+                zs[i] = i % 7 == 0 ? Double.NaN : random.nextInt(8) - 4;
+            }
+
+            int[] scalarIndices = new int[size];
+            int[] vectorIndices = new int[size];
+            int scalarCount = scalar.filter(xs, ys, zs, size, -2, -2, -2, 2, 2, 2, scalarIndices);
+            int vectorCount = vector.filter(xs, ys, zs, size, -2, -2, -2, 2, 2, 2, vectorIndices);
+
+            assertEquals(scalarCount, vectorCount);
+            for (int i = 0; i < scalarCount; i++)
+                assertEquals(scalarIndices[i], vectorIndices[i]);
+        }
+    }
+
+    @Test
+    public void filterOfAnEmptyInstanceFindsNothing() {
+        assertTrue(found(PackedPositions.empty(), -1, -1, -1, 1, 1, 1).isEmpty());
+    }
+
+    private static <T> List<T> found(PackedPositions<T> positions, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        int[] indices = new int[positions.size()];
+        int count = positions.filter(minX, minY, minZ, maxX, maxY, maxZ, indices);
+        List<T> found = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            found.add(positions.get(indices[i]));
+        return found;
+    }
+
+}
@@ -0,0 +1,75 @@
+package dev.rosewood.rosestacker.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class StackClustersTest {
+
+    @Test
+    public void buildChainsStacksWithinRange() {
+        StackClusters<String> clusters = new StackClusters<>();
+        clusters.add("a", 0, 0, 0);
+        clusters.add("b", 4, 0, 0);
+        clusters.add("c", 8, 0, 0);
+        clusters.add("d", 30, 0, 0);
+
+        Collection<List<String>> result = clusters.build(5, false, (stack1, stack2) -> true);
+
+        assertEquals(1, result.size());
+        assertEquals(Set.of("a", "b", "c"), new HashSet<>(result.iterator().next()));
+    }
+
+    @Test
+    public void buildOnlyJoinsStacksThatCanMerge() {
+        StackClusters<String> clusters = new StackClusters<>();
+        clusters.add("a", 0, 0, 0);
+        clusters.add("b", 1, 0, 0);
+        clusters.add("c", 2, 0, 0);
+
+        Collection<List<String>> result = clusters.build(5, false, (stack1, stack2) -> !stack1.equals("b") && !stack2.equals("b"));
+
+        assertEquals(1, result.size());
+        assertEquals(Set.of("a", "c"), new HashSet<>(result.iterator().next()));
+    }
+
+    @Test
+    public void buildChecksEachPairAtMostOnce() {
+        StackClusters<Integer> clusters = new StackClusters<>();
+        for (int i = 0; i < 50; i++)
+            clusters.add(i, i % 3, 0, 0);
+
+        List<int[]> checked = new ArrayList<>();
+        clusters.build(5, false, (stack1, stack2) -> {
+            checked.add(new int[] { stack1, stack2 });
+            return true;
+        });
+
+        // Everything joins one cluster, after which no more pairs need to be checked
+        assertEquals(49, checked.size());
+    }
+
+    @Test
+    public void buildEntireChunkGroupsByChunk() {
+        StackClusters<String> clusters = new StackClusters<>();
+        clusters.add("a", 0.5, 0, 0.5);
+        clusters.add("b", 15.5, 200, 15.5);
+        clusters.add("c", -0.5, 0, 0.5); // Chunk -1, even though it is right next to a
+        clusters.add("d", -15.5, 0, 0.5);
+
+        Collection<List<String>> result = clusters.build(0, true, (stack1, stack2) -> true);
+
+        assertEquals(2, result.size());
+        Set<Set<String>> groups = new HashSet<>();
+        result.forEach(x -> groups.add(new HashSet<>(x)));
+        assertTrue(groups.contains(Set.of("a", "b")));
+        assertTrue(groups.contains(Set.of("c", "d")));
+    }
+
+}
@@ -0,0 +1,283 @@
+package dev.rosewood.rosestacker.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+public class StackEngineTest {
+
+    private static final int COW = 0;
+    private static final int PIG = 1;
+    private static final int DISABLED = 2;
+
+    private static final TypeRules COW_RULES = new TypeRules(true, 2, 10, 5, false, true);
+    private static final TypeRules PIG_RULES = new TypeRules(true, 3, 100, 5, false, false);
+    private static final TypeRules DISABLED_RULES = new TypeRules(false, 3, 10, 5, false, true);
+
+    private static final Comparator<StackView> LARGEST_FIRST = Comparator.comparingInt(StackView::size);
+
+    private final StackEngine engine = new StackEngine(type -> switch (type) {
+        case COW -> COW_RULES;
+        case PIG -> PIG_RULES;
+        case DISABLED -> DISABLED_RULES;
+        default -> null;
+    });
+
+    private static StackView stack(int id, int type, double x, int size) {
+        return new StackView(id, type, x, 64, 0, size, 0);
+    }
+
+    @Test
+    public void planMergesMergesNearbyStacksIntoTheLargest() {
+        List<StackView> stacks = List.of(stack(1, COW, 0, 2), stack(2, COW, 1, 5), stack(3, COW, 2, 1));
+
+        List<MergeDecision> decisions = this.engine.planMerges(stacks, LARGEST_FIRST, (stack1, stack2) -> true);
+
+        assertEquals(1, decisions.size());
+        assertEquals(2, decisions.get(0).target().id());
+        assertEquals(Set.of(1, 3), ids(decisions.get(0).sources()));
+    }
+
+    @Test
+    public void planMergesKeepsTypesApart() {
+        List<StackView> stacks = List.of(stack(1, COW, 0, 1), stack(2, PIG, 0, 1), stack(3, PIG, 1, 1), stack(4, PIG, 2, 1));
+
+        List<MergeDecision> decisions = this.engine.planMerges(stacks, LARGEST_FIRST, (stack1, stack2) -> true);
+
+        assertEquals(1, decisions.size());
+        MergeDecision decision = decisions.get(0);
+        assertEquals(PIG, decision.target().type());
+        assertEquals(2, decision.sources().size());
+    }
+
+    @Test
+    public void planMergesSkipsStacksOutOfRange() {
+        List<StackView> stacks = List.of(stack(1, COW, 0, 1), stack(2, COW, 50, 1));
+
+        assertTrue(this.engine.planMerges(stacks, LARGEST_FIRST, (stack1, stack2) -> true).isEmpty());
+    }
+
+    @Test
+    public void planMergesRespectsTheMaximumStackSize() {
+        List<StackView> stacks = List.of(stack(1, COW, 0, 6), stack(2, COW, 1, 3), stack(3, COW, 2, 3));
+
+        List<MergeDecision> decisions = this.engine.planMerges(stacks, LARGEST_FIRST, (stack1, stack2) -> true);
+
+        assertEquals(1, decisions.size());
+        MergeDecision decision = decisions.get(0);
+        int totalSize = decision.target().size() + decision.sources().stream().mapToInt(StackView::size).sum();
+        assertTrue(totalSize <= COW_RULES.maxStackSize());
+        assertEquals(1, decision.target().id());
+        assertEquals(1, decision.sources().size());
+    }
+
+    @Test
+    public void planMergesRespectsTheMinimumStackSize() {
+        List<StackView> stacks = List.of(stack(1, PIG, 0, 1), stack(2, PIG, 1, 1));
+
+        assertTrue(this.engine.planMerges(stacks, LARGEST_FIRST, (stack1, stack2) -> true).isEmpty());
+    }
+
+    @Test
+    public void planMergesOnlyMergesCompatibleStacks() {
+        List<StackView> stacks = List.of(stack(1, COW, 0, 1), stack(2, COW, 1, 1), stack(3, COW, 2, 1));
+
+        // Stack 3 can't merge with anything
+        List<MergeDecision> decisions = this.engine.planMerges(stacks, LARGEST_FIRST, (stack1, stack2) -> stack1.id() != 3 && stack2.id() != 3);
+
+        assertEquals(1, decisions.size());
+        Set<Integer> merged = ids(decisions.get(0).sources());
+        merged.add(decisions.get(0).target().id());
+        assertEquals(Set.of(1, 2), merged);
+    }
+
+    @Test
+    public void planMergesIgnoresUnstackableAndDisabledStacks() {
+        List<StackView> stacks = List.of(
+                new StackView(1, COW, 0, 64, 0, 1, StackView.UNSTACKABLE), stack(2, COW, 1, 1),
+                stack(3, DISABLED, 0, 1), stack(4, DISABLED, 1, 1));
+
+        assertTrue(this.engine.planMerges(stacks, LARGEST_FIRST, (stack1, stack2) -> true).isEmpty());
+    }
+
+    @Test
+    public void planMergesReportsEveryClusterThatDoesntMerge() {
+        // 1 and 2 merge, 3 and 4 are together but can't reach the pig minimum, 5 is on its own
+        List<StackView> stacks = List.of(stack(1, COW, 0, 1), stack(2, COW, 1, 1), stack(3, PIG, 0, 1), stack(4, PIG, 1, 1), stack(5, COW, 50, 1));
+        List<Set<Integer>> unmerged = new ArrayList<>();
+
+        List<MergeDecision> decisions = this.engine.planMerges(stacks, LARGEST_FIRST, (stack1, stack2) -> true, cluster -> unmerged.add(ids(cluster)));
+
+        assertEquals(1, decisions.size());
+        assertEquals(2, unmerged.size());
+        assertTrue(unmerged.contains(Set.of(3, 4)));
+        assertTrue(unmerged.contains(Set.of(5)));
+    }
+
+    @Test
+    public void planUnstackKeepsSingleEntitiesWithoutTestingThem() {
+        AtomicInteger tests = new AtomicInteger();
+
+        UnstackDecision decision = this.engine.planUnstack(stack(1, COW, 0, 1), stack -> {
+            tests.incrementAndGet();
+            return false;
+        });
+
+        assertEquals(UnstackDecision.KEEP, decision);
+        assertEquals(0, tests.get());
+    }
+
+    @Test
+    public void planUnstackSplitsStacksThatNoLongerBelongTogether() {
+        assertEquals(UnstackDecision.SPLIT, this.engine.planUnstack(stack(1, COW, 0, 5), stack -> false));
+        assertEquals(UnstackDecision.KEEP, this.engine.planUnstack(stack(1, COW, 0, 5), stack -> true));
+    }
+
+    @Test
+    public void planUnstackDissolvesStacksBelowTheMinimum() {
+        TypeRules rules = new TypeRules(true, 5, 10, 5, false, true);
+        StackEngine engine = new StackEngine(type -> rules);
+
+        assertEquals(UnstackDecision.DISSOLVE, engine.planUnstack(stack(1, COW, 0, 3), stack -> true));
+        assertEquals(UnstackDecision.KEEP, engine.planUnstack(stack(1, COW, 0, 5), stack -> true));
+        // Splitting takes priority over dissolving
+        assertEquals(UnstackDecision.SPLIT, engine.planUnstack(stack(1, COW, 0, 3), stack -> false));
+        // Only types that allow it are dissolved
+        assertEquals(UnstackDecision.KEEP, this.engine.planUnstack(stack(1, PIG, 0, 2), stack -> true));
+    }
+
+    @Test
+    public void planUnstackStillDissolvesTypesWithStackingDisabled() {
+        assertEquals(UnstackDecision.DISSOLVE, this.engine.planUnstack(stack(1, DISABLED, 0, 2), stack -> true));
+        assertEquals(UnstackDecision.SPLIT, this.engine.planUnstack(stack(1, DISABLED, 0, 5), stack -> false));
+    }
+
+    @Test
+    public void planMergeMergesCompatibleNeighboursIntoTheLargest() {
+        StackView seed = stack(1, COW, 0, 2);
+        List<StackView> nearby = List.of(seed, stack(2, COW, 1, 5), stack(3, COW, 2, 1), stack(4, PIG, 1, 1));
+
+        MergeDecision decision = this.engine.planMerge(seed, nearby, LARGEST_FIRST, (stack1, stack2) -> true);
+
+        assertEquals(2, decision.target().id());
+        assertEquals(Set.of(1, 3), ids(decision.sources()));
+    }
+
+    @Test
+    public void planMergeOnlyConsidersStacksCompatibleWithTheSeed() {
+        StackView seed = stack(1, COW, 0, 1);
+        List<StackView> nearby = List.of(stack(2, COW, 1, 1), stack(3, COW, 2, 1));
+
+        // Stack 3 is compatible with stack 2 but not with the seed
+        MergeDecision decision = this.engine.planMerge(seed, nearby, LARGEST_FIRST, (stack1, stack2) -> stack2.id() != 3);
+
+        Set<Integer> merged = ids(decision.sources());
+        merged.add(decision.target().id());
+        assertEquals(Set.of(1, 2), merged);
+    }
+
+    @Test
+    public void planMergeRespectsTheStackSizes() {
+        StackView seed = stack(1, COW, 0, 6);
+
+        MergeDecision decision = this.engine.planMerge(seed, List.of(stack(2, COW, 1, 5), stack(3, COW, 2, 4)), LARGEST_FIRST, (stack1, stack2) -> true);
+
+        assertEquals(1, decision.target().id());
+        assertEquals(Set.of(3), ids(decision.sources()));
+        // Merging two single pigs doesn't reach the minimum of 3
+        assertNull(this.engine.planMerge(stack(1, PIG, 0, 1), List.of(stack(2, PIG, 1, 1)), LARGEST_FIRST, (stack1, stack2) -> true));
+    }
+
+    @Test
+    public void planMergeLeavesTypesWithStackingDisabledAlone() {
+        assertNull(this.engine.planMerge(stack(1, DISABLED, 0, 2), List.of(stack(2, DISABLED, 1, 2)), LARGEST_FIRST, (stack1, stack2) -> true));
+    }
+
+    @Test
+    public void planSpawnsFillsNearbyStacksFirst() {
+        List<StackView> nearby = List.of(stack(1, COW, 0, 8), stack(2, COW, 1, 5));
+
+        List<SpawnDecision> decisions = this.engine.planSpawns(COW, 4, nearby, (stack, amount) -> true, () -> true);
+
+        assertEquals(2, decisions.size());
+        assertEquals(1, decisions.get(0).target().id());
+        assertEquals(2, decisions.get(0).amount());
+        assertEquals(2, decisions.get(1).target().id());
+        assertEquals(2, decisions.get(1).amount());
+        assertEquals(4, total(decisions));
+    }
+
+    @Test
+    public void planSpawnsSkipsIncompatibleAndOtherStacks() {
+        List<StackView> nearby = List.of(stack(1, COW, 0, 1), stack(2, PIG, 0, 1), new StackView(3, COW, 0, 64, 0, 1, StackView.UNSTACKABLE), stack(4, COW, 0, 1));
+
+        List<SpawnDecision> decisions = this.engine.planSpawns(COW, 3, nearby, (stack, amount) -> stack.id() != 1, () -> true);
+
+        assertEquals(1, decisions.size());
+        assertEquals(4, decisions.get(0).target().id());
+        assertEquals(3, decisions.get(0).amount());
+    }
+
+    @Test
+    public void planSpawnsFillsNewStacksUpToTheMaximum() {
+        AtomicInteger tests = new AtomicInteger();
+
+        List<SpawnDecision> decisions = this.engine.planSpawns(COW, 25, List.of(), (stack, amount) -> true, () -> {
+            tests.incrementAndGet();
+            return true;
+        });
+
+        assertEquals(List.of(10, 10, 5), decisions.stream().map(SpawnDecision::amount).toList());
+        assertTrue(decisions.stream().allMatch(SpawnDecision::isNewStack));
+        assertEquals(1, tests.get());
+    }
+
+    @Test
+    public void planSpawnsGivesEachEntityItsOwnStackIfNewStacksCantGrow() {
+        List<SpawnDecision> decisions = this.engine.planSpawns(COW, 3, List.of(), (stack, amount) -> true, () -> false);
+
+        assertEquals(List.of(1, 1, 1), decisions.stream().map(SpawnDecision::amount).toList());
+        assertTrue(decisions.stream().allMatch(SpawnDecision::isNewStack));
+    }
+
+    @Test
+    public void planSpawnsOnlyTestsNewStacksWhenNeeded() {
+        AtomicInteger tests = new AtomicInteger();
+
+        List<SpawnDecision> decisions = this.engine.planSpawns(COW, 2, List.of(stack(1, COW, 0, 1)), (stack, amount) -> true, () -> {
+            tests.incrementAndGet();
+            return true;
+        });
+
+        assertEquals(1, decisions.size());
+        assertFalse(decisions.get(0).isNewStack());
+        assertEquals(0, tests.get());
+    }
+
+    @Test
+    public void planSpawnsOfDisabledTypesAreSingleEntities() {
+        List<SpawnDecision> decisions = this.engine.planSpawns(DISABLED, 3, List.of(stack(1, DISABLED, 0, 1)), (stack, amount) -> true, () -> true);
+
+        assertEquals(3, decisions.size());
+        assertTrue(decisions.stream().allMatch(x -> x.isNewStack() && x.amount() == 1));
+    }
+
+    private static Set<Integer> ids(List<StackView> stacks) {
+        return stacks.stream().map(StackView::id).collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private static int total(List<SpawnDecision> decisions) {
+        return decisions.stream().mapToInt(SpawnDecision::amount).sum();
+    }
+
+}
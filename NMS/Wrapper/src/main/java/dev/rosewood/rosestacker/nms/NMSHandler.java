@@ -6,6 +6,7 @@ import dev.rosewood.rosestacker.nms.storage.EntityDataEntry;
 import dev.rosewood.rosestacker.nms.storage.StackedEntityDataStorage;
 import dev.rosewood.rosestacker.nms.storage.StackedEntityDataStorageType;
 import dev.rosewood.rosestacker.nms.storage.StorageMigrationType;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import org.bukkit.Location;
@@ -19,6 +20,7 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.entity.CreatureSpawnEvent.SpawnReason;
 import org.bukkit.event.entity.EntityDeathEvent;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.BoundingBox;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 
@@ -318,4 +320,21 @@ public interface NMSHandler {
         return world.getEntities();
     }
 
+    /**
+     * Gets all entities whose bounding boxes intersect an area, straight from the world's entity storage.
+     * Must be called on the main thread.
+     *
+     * @param world The world
+     * @param minX The minimum x coordinate of the area
+     * @param minY The minimum y coordinate of the area
+     * @param minZ The minimum z coordinate of the area
+     * @param maxX The maximum x coordinate of the area
+     * @param maxY The maximum y coordinate of the area
+     * @param maxZ The maximum z coordinate of the area
+     * @return A list of the entities in the area
+     */
+    default List<Entity> getEntitiesInArea(World world, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        return new ArrayList<>(world.getNearbyEntities(new BoundingBox(minX, minY, minZ, maxX, maxY, maxZ)));
+    }
+
 }
@@ -71,6 +71,7 @@ import net.minecraft.world.level.block.entity.SpawnerBlockEntity;
 import net.minecraft.world.level.entity.PersistentEntitySectionManager;
 import net.minecraft.world.level.levelgen.LegacyRandomSource;
 import net.minecraft.world.level.levelgen.ThreadSafeLegacyRandomSource;
+import net.minecraft.world.phys.AABB;
 import net.minecraft.world.phys.HitResult;
 import net.minecraft.world.phys.Vec3;
 import org.bukkit.Bukkit;
@@ -511,6 +512,15 @@ public class NMSHandlerImpl implements NMSHandler {
         return entities;
     }
 
+    @Override
+    public List<org.bukkit.entity.Entity> getEntitiesInArea(World world, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        ServerLevel level = ((CraftWorld) world).getHandle();
+        List<org.bukkit.entity.Entity> entities = new ArrayList<>();
+        for (Entity entity : level.getEntities((Entity) null, new AABB(minX, minY, minZ, maxX, maxY, maxZ)))
+            entities.add(entity.getBukkitEntity());
+        return entities;
+    }
+
     public void addEntityToWorld(ServerLevel world, Entity entity) throws ReflectiveOperationException {
         if (field_ServerLevel_entityManager != null) {
             PersistentEntitySectionManager<Entity> entityManager = (PersistentEntitySectionManager<Entity>) field_ServerLevel_entityManager.get(world);
@@ -13,6 +13,8 @@ import dev.rosewood.rosestacker.listener.BeeListener;
 import dev.rosewood.rosestacker.listener.BlockListener;
 import dev.rosewood.rosestacker.listener.BreedingListener;
 import dev.rosewood.rosestacker.listener.EntitiesLoadListener;
+import dev.rosewood.rosestacker.listener.EntityActivityListener;
+import dev.rosewood.rosestacker.listener.EntityCacheListener;
 import dev.rosewood.rosestacker.listener.EntityListener;
 import dev.rosewood.rosestacker.listener.InteractListener;
 import dev.rosewood.rosestacker.listener.ItemListener;
@@ -21,6 +23,7 @@ import dev.rosewood.rosestacker.listener.StackToolListener;
 import dev.rosewood.rosestacker.listener.WorldListener;
 import dev.rosewood.rosestacker.manager.CommandManager;
 import dev.rosewood.rosestacker.manager.EntityCacheManager;
+import dev.rosewood.rosestacker.manager.ExecutorManager;
 import dev.rosewood.rosestacker.manager.HologramManager;
 import dev.rosewood.rosestacker.manager.LocaleManager;
 import dev.rosewood.rosestacker.manager.StackManager;
@@ -85,6 +88,19 @@ public class RoseStacker extends RosePlugin {
             }
         }
 
+        if (NMSUtil.isPaper()) {
+            try {
+                Class.forName("com.destroystokyo.paper.event.entity.EntityRemoveFromWorldEvent");
+                pluginManager.registerEvents(new EntityCacheListener(this), this);
+            } catch (ClassNotFoundException ignored) { }
+
+            try {
+                Class.forName("io.papermc.paper.event.entity.EntityMoveEvent");
+                pluginManager.registerEvents(new EntityActivityListener(this), this);
+                this.getManager(StackManager.class).setEntityActivityTracked(true);
+            } catch (ClassNotFoundException ignored) { }
+        }
+
         // Try to hook with PlaceholderAPI
         if (Bukkit.getPluginManager().isPluginEnabled("PlaceholderAPI"))
             new RoseStackerPlaceholderExpansion(this).register();
@@ -118,6 +134,7 @@ public class RoseStacker extends RosePlugin {
     @Override
     protected List<Class<? extends Manager>> getManagerLoadPriority() {
         return List.of(
+                ExecutorManager.class,
                 HologramManager.class,
                 StackSettingManager.class,
                 CommandManager.class,
@@ -0,0 +1,205 @@
+package dev.rosewood.rosestacker.cache;
+
+import dev.rosewood.rosestacker.engine.PackedPositions;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.util.NumberConversions;
+
+/**
+ * Holds the cached entities within a 16x16x16 chunk section of a world, partitioned by {@link EntityType}.
+ * Each bucket also keeps the positions of its entities packed into arrays so areas can be searched without reading every
+ * entity. The packed positions are refreshed whenever the owning {@link WorldEntityCache} reconciles, in between they
+ * may still hold entities that have since left the bucket.
+ */
+public class EntitySection {
+
+    private static final EntityType[] ENTITY_TYPES = EntityType.values();
+
+    private final long key;
+    private final AtomicReferenceArray<Collection<Entity>> buckets;
+    private final AtomicReferenceArray<PackedPositions<Entity>> positions;
+    private volatile int size;
+    private PackedPositions<Entity>[] stagedPositions;
+
+    EntitySection(long key) {
+        this.key = key;
+        this.buckets = new AtomicReferenceArray<>(ENTITY_TYPES.length);
+        this.positions = new AtomicReferenceArray<>(ENTITY_TYPES.length);
+    }
+
+    /**
+     * @return the packed section coordinate of this section
+     */
+    public long getKey() {
+        return this.key;
+    }
+
+    /**
+     * Gets the entities of a single type currently cached in this section
+     *
+     * @param entityType The type of entity
+     * @return the entities of the given type, or null if there are none
+     */
+    public Collection<Entity> getEntities(EntityType entityType) {
+        return this.buckets.get(entityType.ordinal());
+    }
+
+    /**
+     * Gets the bucket at an index, used to walk every entity type in this section
+     *
+     * @param index The bucket index, from 0 inclusive to {@link #getBucketCount()} exclusive
+     * @return the entities in the bucket, or null if there are none
+     */
+    public Collection<Entity> getBucket(int index) {
+        return this.buckets.get(index);
+    }
+
+    /**
+     * Gets the packed positions of the entities in the bucket at an index, as of when they were last refreshed
+     *
+     * @param index The bucket index, from 0 inclusive to {@link #getBucketCount()} exclusive
+     * @return the packed positions, or null if there are no entities in the bucket
+     */
+    public PackedPositions<Entity> getPositions(int index) {
+        return this.positions.get(index);
+    }
+
+    /**
+     * @return the number of type buckets in a section
+     */
+    public static int getBucketCount() {
+        return ENTITY_TYPES.length;
+    }
+
+    void add(Entity entity, double x, double y, double z) {
+        int index = entity.getType().ordinal();
+        Collection<Entity> bucket = this.buckets.get(index);
+        if (bucket == null) {
+            bucket = ConcurrentHashMap.newKeySet();
+            this.buckets.set(index, bucket);
+            this.positions.set(index, PackedPositions.empty());
+        }
+
+        if (bucket.add(entity)) {
+            this.size++;
+            this.positions.set(index, this.positions.get(index).with(entity, x, y, z));
+        }
+    }
+
+    void remove(Entity entity) {
+        int index = entity.getType().ordinal();
+        Collection<Entity> bucket = this.buckets.get(index);
+        if (bucket == null || !bucket.remove(entity))
+            return;
+
+        this.size--;
+        if (bucket.isEmpty()) {
+            this.buckets.set(index, null);
+            this.positions.set(index, null);
+        }
+    }
+
+    /**
+     * Records the current position of an entity in this section, the positions recorded replace the packed positions of
+     * their buckets once {@link #publishPositions()} is called
+     *
+     * @param entity The entity
+     * @param x The x coordinate of the entity
+     * @param y The y coordinate of the entity
+     * @param z The z coordinate of the entity
+     * @return true if this is the first position recorded since the last publish
+     */
+    @SuppressWarnings("unchecked")
+    boolean stagePosition(Entity entity, double x, double y, double z) {
+        boolean first = this.stagedPositions == null;
+        if (first)
+            this.stagedPositions = new PackedPositions[ENTITY_TYPES.length];
+
+        int index = entity.getType().ordinal();
+        PackedPositions<Entity> staged = this.stagedPositions[index];
+        if (staged == null)
+            staged = PackedPositions.empty();
+        this.stagedPositions[index] = staged.with(entity, x, y, z);
+        return first;
+    }
+
+    /**
+     * Replaces the packed positions of every bucket with the positions recorded by {@link #stagePosition}
+     */
+    void publishPositions() {
+        if (this.stagedPositions == null)
+            return;
+
+        for (int i = 0; i < this.stagedPositions.length; i++)
+            if (this.stagedPositions[i] != null && this.buckets.get(i) != null)
+                this.positions.set(i, this.stagedPositions[i]);
+        this.stagedPositions = null;
+    }
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Packs section coordinates into a single long, using the same layout as the vanilla section position
+     *
+     * @param x The section x coordinate
+     * @param y The section y coordinate
+     * @param z The section z coordinate
+     * @return the packed section coordinate
+     */
+    public static long key(int x, int y, int z) {
+        return ((long) x & 0x3FFFFFL) << 42 | ((long) y & 0xFFFFFL) | ((long) z & 0x3FFFFFL) << 20;
+    }
+
+    /**
+     * @param key The packed section coordinate
+     * @return the section x coordinate
+     */
+    public static int getX(long key) {
+        return (int) (key >> 42);
+    }
+
+    /**
+     * @param key The packed section coordinate
+     * @return the section y coordinate
+     */
+    public static int getY(long key) {
+        return (int) (key << 44 >> 44);
+    }
+
+    /**
+     * @param key The packed section coordinate
+     * @return the section z coordinate
+     */
+    public static int getZ(long key) {
+        return (int) (key << 22 >> 42);
+    }
+
+    /**
+     * Gets the packed section coordinate containing a position
+     *
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @param z The z coordinate
+     * @return the packed section coordinate
+     */
+    public static long key(double x, double y, double z) {
+        return key(toSection(x), toSection(y), toSection(z));
+    }
+
+    /**
+     * Gets the section coordinate containing a coordinate, rounding down like the server does so negative coordinates
+     * land in the right section
+     *
+     * @param coordinate The x, y, or z coordinate
+     * @return the section coordinate
+     */
+    public static int toSection(double coordinate) {
+        return NumberConversions.floor(coordinate) >> 4;
+    }
+
+}
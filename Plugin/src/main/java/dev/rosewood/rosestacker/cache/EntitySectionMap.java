@@ -0,0 +1,128 @@
+package dev.rosewood.rosestacker.cache;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An open-addressing hash map of packed section coordinates to {@link EntitySection}s.
+ * Lookups are lock-free and allocation-free and may run on any thread, all modifications must be made while holding
+ * the lock of the owning {@link WorldEntityCache}.
+ * Sections are stored directly in the table so a reader can never see a key paired with the wrong section. Removed
+ * sections leave a tombstone behind instead of shifting later entries back, so an entry never moves while a reader may
+ * be probing past it. Tombstones are dropped whenever the table is copied into a new one.
+ */
+final class EntitySectionMap {
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final EntitySection TOMBSTONE = new EntitySection(0);
+
+    private volatile AtomicReferenceArray<EntitySection> table;
+    private int size, tombstones;
+
+    EntitySectionMap() {
+        this.table = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Gets a section by its key
+     *
+     * @param key The packed section coordinate
+     * @return the section, or null if there are no entities cached in it
+     */
+    EntitySection get(long key) {
+        AtomicReferenceArray<EntitySection> table = this.table;
+        int mask = table.length() - 1;
+        int index = mix(key) & mask;
+        for (int probes = 0; probes < table.length(); probes++) {
+            EntitySection section = table.get(index);
+            if (section == null)
+                return null;
+            if (section != TOMBSTONE && section.getKey() == key)
+                return section;
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    EntitySection getOrCreate(long key) {
+        EntitySection section = this.get(key);
+        if (section != null)
+            return section;
+
+        AtomicReferenceArray<EntitySection> table = this.table;
+        if ((this.size + this.tombstones + 1) * 2 > table.length()) {
+            // Grow if the table is filling up with sections, otherwise copy it to clear out the tombstones
+            int capacity = (this.size + 1) * 4 > table.length() ? table.length() * 2 : table.length();
+            table = this.copy(capacity);
+        }
+
+        section = new EntitySection(key);
+        int mask = table.length() - 1;
+        int index = mix(key) & mask;
+        EntitySection existing;
+        while ((existing = table.get(index)) != null && existing != TOMBSTONE)
+            index = (index + 1) & mask;
+
+        if (existing == TOMBSTONE)
+            this.tombstones--;
+        table.set(index, section); // Filling a slot never moves another entry, so readers can't miss one
+        this.size++;
+        return section;
+    }
+
+    /**
+     * Removes a section from the map, leaving a tombstone in its slot so the probe chains through it stay intact
+     *
+     * @param section The section to remove
+     */
+    void remove(EntitySection section) {
+        AtomicReferenceArray<EntitySection> table = this.table;
+        int mask = table.length() - 1;
+        int index = mix(section.getKey()) & mask;
+        EntitySection current;
+        while ((current = table.get(index)) != section) {
+            if (current == null)
+                return;
+            index = (index + 1) & mask;
+        }
+
+        table.set(index, TOMBSTONE);
+        this.size--;
+        this.tombstones++;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Copies the live sections into a new table and publishes it, readers still on the old table see it as it was
+     *
+     * @param capacity The capacity of the new table
+     * @return the new table
+     */
+    private AtomicReferenceArray<EntitySection> copy(int capacity) {
+        AtomicReferenceArray<EntitySection> table = this.table;
+        AtomicReferenceArray<EntitySection> copy = new AtomicReferenceArray<>(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < table.length(); i++) {
+            EntitySection section = table.get(i);
+            if (section == null || section == TOMBSTONE)
+                continue;
+
+            int index = mix(section.getKey()) & mask;
+            while (copy.get(index) != null)
+                index = (index + 1) & mask;
+            copy.set(index, section);
+        }
+
+        this.table = copy;
+        this.tombstones = 0;
+        return copy;
+    }
+
+    private static int mix(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+}
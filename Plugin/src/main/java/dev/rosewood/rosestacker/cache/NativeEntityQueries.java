@@ -0,0 +1,250 @@
+package dev.rosewood.rosestacker.cache;
+
+import dev.rosewood.rosestacker.RoseStacker;
+import dev.rosewood.rosestacker.nms.NMSAdapter;
+import dev.rosewood.rosestacker.nms.NMSHandler;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+
+/**
+ * Resolves area queries against the server's own entity storage instead of the entity cache.
+ * Queries made off the main thread are queued and resolved together once per tick by {@link #resolve()}, the calling
+ * thread waits for its results. Queries made on the main thread are resolved immediately.
+ * A stacking run can {@link #prefetch(World, Collection)} every chunk section it is going to search up front, so the
+ * whole run waits on the main thread once instead of once per search.
+ */
+public class NativeEntityQueries {
+
+    private static final long TIMEOUT_MILLIS = 1000;
+
+    private final Queue<Query> pendingQueries;
+    private final Map<World, Map<Long, List<Entity>>> prefetchedSections;
+
+    public NativeEntityQueries() {
+        this.pendingQueries = new ConcurrentLinkedQueue<>();
+        this.prefetchedSections = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets the entities in an area.
+     * Every entity positioned within the area is returned, entities whose bounding boxes only reach into the area may
+     * be returned as well. If the area is covered by prefetched sections, entities of those sections outside the area
+     * are also returned, callers are expected to filter by position.
+     * Returns an empty list if the query is not resolved in time, such as while the server is stopping.
+     *
+     * @param world The world
+     * @param minX The minimum x coordinate of the area
+     * @param minY The minimum y coordinate of the area
+     * @param minZ The minimum z coordinate of the area
+     * @param maxX The maximum x coordinate of the area
+     * @param maxY The maximum y coordinate of the area
+     * @param maxZ The maximum z coordinate of the area
+     * @return A list of the entities in the area
+     */
+    public List<Entity> query(World world, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        if (Bukkit.isPrimaryThread())
+            return NMSAdapter.getHandler().getEntitiesInArea(world, minX, minY, minZ, maxX, maxY, maxZ);
+
+        List<Entity> prefetched = this.getPrefetched(world, minX, minY, minZ, maxX, maxY, maxZ);
+        if (prefetched != null)
+            return prefetched;
+
+        List<List<Entity>> results = this.await(new Query(world, List.of(new double[] { minX, minY, minZ, maxX, maxY, maxZ }), new CompletableFuture<>()));
+        return results == null ? new ArrayList<>() : results.get(0);
+    }
+
+    /**
+     * Gets the entities in a set of chunk sections, sections that were not prefetched are resolved with a single wait
+     *
+     * @param world The world
+     * @param sectionKeys The packed section coordinates, see {@link EntitySection#key(int, int, int)}
+     * @return the entities of each section, or null if they could not be resolved in time
+     */
+    public Map<Long, List<Entity>> querySections(World world, Collection<Long> sectionKeys) {
+        Map<Long, List<Entity>> prefetched = this.prefetchedSections.getOrDefault(world, Map.of());
+        Map<Long, List<Entity>> sections = new HashMap<>();
+        List<Long> missingKeys = new ArrayList<>();
+        for (long key : sectionKeys) {
+            List<Entity> section = prefetched.get(key);
+            if (section != null) {
+                sections.put(key, section);
+            } else {
+                missingKeys.add(key);
+            }
+        }
+
+        Map<Long, List<Entity>> resolved = this.resolveSections(world, missingKeys);
+        if (resolved == null)
+            return null;
+
+        sections.putAll(resolved);
+        return sections;
+    }
+
+    /**
+     * Resolves a set of chunk sections with a single wait, later queries that fall within them are answered without
+     * waiting on the main thread again
+     *
+     * @param world The world
+     * @param sectionKeys The packed section coordinates, see {@link EntitySection#key(int, int, int)}
+     * @return the sections to pass to {@link #release(World, Map)} once they are no longer needed, or null if they could
+     * not be resolved in time
+     */
+    public Map<Long, List<Entity>> prefetch(World world, Collection<Long> sectionKeys) {
+        Map<Long, List<Entity>> prefetched = this.prefetchedSections.computeIfAbsent(world, x -> new ConcurrentHashMap<>());
+        List<Long> missingKeys = new ArrayList<>();
+        for (long key : sectionKeys)
+            if (!prefetched.containsKey(key))
+                missingKeys.add(key);
+
+        Map<Long, List<Entity>> resolved = this.resolveSections(world, missingKeys);
+        if (resolved == null)
+            return null;
+
+        prefetched.putAll(resolved);
+        return resolved;
+    }
+
+    /**
+     * Drops prefetched sections
+     *
+     * @param world The world
+     * @param sections The sections returned by {@link #prefetch(World, Collection)}
+     */
+    public void release(World world, Map<Long, List<Entity>> sections) {
+        Map<Long, List<Entity>> prefetched = this.prefetchedSections.get(world);
+        if (prefetched != null)
+            for (Entry<Long, List<Entity>> entry : sections.entrySet())
+                prefetched.computeIfPresent(entry.getKey(), (key, section) -> section == entry.getValue() ? null : section);
+    }
+
+    /**
+     * Resolves every pending query, must be called on the main thread
+     */
+    public void resolve() {
+        NMSHandler nmsHandler = NMSAdapter.getHandler();
+        Query query;
+        while ((query = this.pendingQueries.poll()) != null) {
+            try {
+                List<List<Entity>> results = new ArrayList<>(query.areas().size());
+                for (double[] area : query.areas())
+                    results.add(nmsHandler.getEntitiesInArea(query.world(), area[0], area[1], area[2], area[3], area[4], area[5]));
+                query.result().complete(results);
+            } catch (Exception e) {
+                query.result().completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Releases any threads still waiting on a pending query
+     */
+    public void cancel() {
+        Query query;
+        while ((query = this.pendingQueries.poll()) != null)
+            query.result().complete(null);
+        this.prefetchedSections.clear();
+    }
+
+    /**
+     * Gets the entities of the prefetched sections that cover an area
+     *
+     * @return the entities, or null if any section the area covers was not prefetched
+     */
+    private List<Entity> getPrefetched(World world, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        Map<Long, List<Entity>> prefetched = this.prefetchedSections.get(world);
+        if (prefetched == null || prefetched.isEmpty())
+            return null;
+
+        // Only the sections an entity within the area can be positioned in matter, maximums are exclusive
+        int minSectionX = EntitySection.toSection(minX);
+        int maxSectionX = (int) Math.ceil(maxX) - 1 >> 4;
+        int minSectionY = EntitySection.toSection(minY);
+        int maxSectionY = (int) Math.ceil(maxY) - 1 >> 4;
+        int minSectionZ = EntitySection.toSection(minZ);
+        int maxSectionZ = (int) Math.ceil(maxZ) - 1 >> 4;
+
+        Set<Entity> entities = new HashSet<>();
+        for (int x = minSectionX; x <= maxSectionX; x++) {
+            for (int y = minSectionY; y <= maxSectionY; y++) {
+                for (int z = minSectionZ; z <= maxSectionZ; z++) {
+                    List<Entity> section = prefetched.get(EntitySection.key(x, y, z));
+                    if (section == null)
+                        return null;
+                    entities.addAll(section);
+                }
+            }
+        }
+        return new ArrayList<>(entities);
+    }
+
+    /**
+     * Resolves chunk sections with a single wait
+     *
+     * @return the entities of each section, or null if they could not be resolved in time
+     */
+    private Map<Long, List<Entity>> resolveSections(World world, List<Long> sectionKeys) {
+        Map<Long, List<Entity>> sections = new HashMap<>();
+        if (sectionKeys.isEmpty())
+            return sections;
+
+        List<double[]> areas = new ArrayList<>(sectionKeys.size());
+        for (long key : sectionKeys) {
+            double minX = EntitySection.getX(key) << 4;
+            double minY = EntitySection.getY(key) << 4;
+            double minZ = EntitySection.getZ(key) << 4;
+            areas.add(new double[] { minX, minY, minZ, minX + 16, minY + 16, minZ + 16 });
+        }
+
+        List<List<Entity>> results = this.await(new Query(world, areas, new CompletableFuture<>()));
+        if (results == null)
+            return null;
+
+        for (int i = 0; i < sectionKeys.size(); i++)
+            sections.put(sectionKeys.get(i), results.get(i));
+        return sections;
+    }
+
+    /**
+     * Queues a query and waits for the main thread to resolve it
+     *
+     * @return the entities of each area of the query, or null if it was not resolved in time
+     */
+    private List<List<Entity>> await(Query query) {
+        this.pendingQueries.add(query);
+        if (Bukkit.isPrimaryThread())
+            this.resolve();
+
+        try {
+            return query.result().get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            RoseStacker.getInstance().getLogger().warning("Failed to query entities in " + query.world().getName() + ": " + e.getCause());
+            return null;
+        } catch (TimeoutException e) {
+            RoseStacker.getInstance().getLogger().warning(String.format("Timed out after %dms waiting for the main thread to query entities in %s", TIMEOUT_MILLIS, query.world().getName()));
+            return null;
+        }
+    }
+
+    private record Query(World world, List<double[]> areas, CompletableFuture<List<List<Entity>>> result) { }
+
+}
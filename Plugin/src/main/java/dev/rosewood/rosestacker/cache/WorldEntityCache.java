@@ -0,0 +1,160 @@
+package dev.rosewood.rosestacker.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+
+/**
+ * Caches the entities of a single world by the chunk section they are in.
+ * Reads may happen from any thread, writes are serialized on this cache.
+ * An entity that changes sections is added to its new section before being removed from its old one, so it is always
+ * in at least one of them and a concurrent reader may briefly see it in both.
+ */
+public class WorldEntityCache {
+
+    private final World world;
+    private final EntitySectionMap sections;
+    private final Map<Entity, EntitySection> entitySections;
+    private final double[] position;
+
+    public WorldEntityCache(World world) {
+        this.world = world;
+        this.sections = new EntitySectionMap();
+        this.entitySections = new ConcurrentHashMap<>();
+        this.position = new double[3];
+    }
+
+    /**
+     * Gets a section of this world
+     *
+     * @param key The packed section coordinate, see {@link EntitySection#key(int, int, int)}
+     * @return the section, or null if there are no entities cached in it
+     */
+    public EntitySection getSection(long key) {
+        return this.sections.get(key);
+    }
+
+    /**
+     * Checks if an entity is cached in a section. An entity changing sections is briefly in both of them, but it is only
+     * ever cached in one, so this can be used to visit each entity once while walking several sections.
+     *
+     * @param entity The entity
+     * @param section The section
+     * @return true if the entity is currently cached in the section
+     */
+    public boolean isCachedIn(Entity entity, EntitySection section) {
+        return this.entitySections.get(entity) == section;
+    }
+
+    /**
+     * Moves an entity to the section it is in, adding it to the cache if it isn't tracked yet
+     *
+     * @param entity The entity
+     * @param positionReader Reads the current position of the entity
+     */
+    public synchronized void update(Entity entity, PositionReader positionReader) {
+        positionReader.read(entity, this.position);
+        long key = EntitySection.key(this.position[0], this.position[1], this.position[2]);
+        EntitySection current = this.entitySections.get(entity);
+        if (current != null && current.getKey() == key)
+            return;
+
+        EntitySection section = this.sections.getOrCreate(key);
+        section.add(entity, this.position[0], this.position[1], this.position[2]);
+        this.entitySections.put(entity, section);
+        if (current != null)
+            this.removeFromSection(current, entity);
+    }
+
+    /**
+     * Removes an entity from the cache
+     *
+     * @param entity The entity
+     */
+    public synchronized void remove(Entity entity) {
+        EntitySection section = this.entitySections.remove(entity);
+        if (section != null)
+            this.removeFromSection(section, entity);
+    }
+
+    /**
+     * Moves entities that have changed sections, drops entities that are no longer valid or in this world, and refreshes
+     * the packed positions of every section.
+     * Entities that haven't changed sections are not moved.
+     *
+     * @param positionReader Reads the current position of an entity
+     */
+    public synchronized void reconcile(PositionReader positionReader) {
+        List<EntitySection> stagedSections = new ArrayList<>();
+        try {
+            Iterator<Entry<Entity, EntitySection>> iterator = this.entitySections.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Entry<Entity, EntitySection> entry = iterator.next();
+                Entity entity = entry.getKey();
+                EntitySection current = entry.getValue();
+                if (!entity.isValid() || entity.getWorld() != this.world) {
+                    iterator.remove();
+                    this.removeFromSection(current, entity);
+                    continue;
+                }
+
+                double[] position = this.position;
+                positionReader.read(entity, position);
+                long key = EntitySection.key(position[0], position[1], position[2]);
+                EntitySection section = current;
+                if (current.getKey() != key) {
+                    section = this.sections.getOrCreate(key);
+                    section.add(entity, position[0], position[1], position[2]);
+                    entry.setValue(section);
+                    this.removeFromSection(current, entity);
+                }
+
+                if (section.stagePosition(entity, position[0], position[1], position[2]))
+                    stagedSections.add(section);
+            }
+        } finally {
+            for (EntitySection section : stagedSections)
+                section.publishPositions();
+        }
+    }
+
+    /**
+     * @return the number of entities in this cache
+     */
+    public int size() {
+        return this.entitySections.size();
+    }
+
+    /**
+     * @return the world this cache is for
+     */
+    public World getWorld() {
+        return this.world;
+    }
+
+    private void removeFromSection(EntitySection section, Entity entity) {
+        section.remove(entity);
+        if (section.isEmpty())
+            this.sections.remove(section);
+    }
+
+    /**
+     * Reads the position of an entity
+     */
+    @FunctionalInterface
+    public interface PositionReader {
+
+        /**
+         * @param entity The entity
+         * @param position The array to write the x, y, and z coordinates of the entity to
+         */
+        void read(Entity entity, double[] position);
+
+    }
+
+}
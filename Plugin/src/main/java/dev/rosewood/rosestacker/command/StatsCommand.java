@@ -6,11 +6,19 @@ import dev.rosewood.rosegarden.command.framework.CommandContext;
 import dev.rosewood.rosegarden.command.framework.CommandInfo;
 import dev.rosewood.rosegarden.command.framework.annotation.RoseExecutable;
 import dev.rosewood.rosegarden.utils.StringPlaceholders;
+import dev.rosewood.rosestacker.manager.ExecutorManager;
+import dev.rosewood.rosestacker.manager.ExecutorManager.MonitoredExecutor;
+import dev.rosewood.rosestacker.manager.ExecutorManager.Pool;
 import dev.rosewood.rosestacker.manager.LocaleManager;
 import dev.rosewood.rosestacker.manager.StackManager;
+import dev.rosewood.rosestacker.stack.MergeYields;
+import dev.rosewood.rosestacker.stack.MergeYields.TypeYield;
 import dev.rosewood.rosestacker.stack.Stack;
+import dev.rosewood.rosestacker.stack.StackingThread;
 import dev.rosewood.rosestacker.utils.StackerUtils;
 import dev.rosewood.rosestacker.utils.ThreadUtils;
+import java.util.Map.Entry;
+import org.bukkit.entity.EntityType;
 
 public class StatsCommand extends BaseRoseCommand {
 
@@ -39,13 +47,51 @@ public class StatsCommand extends BaseRoseCommand {
         int blockAmount = stackManager.getStackedBlocks().values().stream().mapToInt(Stack::getStackSize).sum();
         int spawnerAmount = stackManager.getStackedSpawners().values().stream().mapToInt(Stack::getStackSize).sum();
 
+        // Report the slowest world, that's the one holding stacking back
+        long entityPassTime = stackManager.getStackingThreads().values().stream().mapToLong(StackingThread::getEntityStackPassTime).max().orElse(-1);
+        long itemPassTime = stackManager.getStackingThreads().values().stream().mapToLong(StackingThread::getItemStackPassTime).max().orElse(-1);
+
         localeManager.sendCommandMessage(context.getSender(), "command-stats-header");
         localeManager.sendSimpleCommandMessage(context.getSender(), "command-stats-threads", StringPlaceholders.of("amount", StackerUtils.formatNumber(threadAmount)));
         localeManager.sendSimpleCommandMessage(context.getSender(), "command-stats-stacked-entities", StringPlaceholders.of("stackAmount", StackerUtils.formatNumber(entityStackAmount),"total", StackerUtils.formatNumber(entityAmount)));
         localeManager.sendSimpleCommandMessage(context.getSender(), "command-stats-stacked-items", StringPlaceholders.of("stackAmount", StackerUtils.formatNumber(itemStackAmount), "total", StackerUtils.formatNumber(itemAmount)));
         localeManager.sendSimpleCommandMessage(context.getSender(), "command-stats-stacked-blocks", StringPlaceholders.of("stackAmount", StackerUtils.formatNumber(blockStackAmount), "total", StackerUtils.formatNumber(blockAmount)));
         localeManager.sendSimpleCommandMessage(context.getSender(), "command-stats-stacked-spawners", StringPlaceholders.of("stackAmount", StackerUtils.formatNumber(spawnerStackAmount), "total", StackerUtils.formatNumber(spawnerAmount)));
+        localeManager.sendSimpleCommandMessage(context.getSender(), "command-stats-pass-times", StringPlaceholders.of("entityTime", this.formatPassTime(entityPassTime), "itemTime", this.formatPassTime(itemPassTime)));
         localeManager.sendSimpleCommandMessage(context.getSender(), "command-stats-active-tasks", StringPlaceholders.of("amount", StackerUtils.formatNumber(ThreadUtils.getActiveThreads())));
+
+        for (StackingThread stackingThread : stackManager.getStackingThreads().values())
+            localeManager.sendSimpleCommandMessage(context.getSender(), "command-stats-world-behind", StringPlaceholders.of("world", stackingThread.getTargetWorld().getName(), "ticks", StackerUtils.formatNumber(stackingThread.getTicksBehind())));
+
+        for (Entry<Pool, MonitoredExecutor> entry : this.rosePlugin.getManager(ExecutorManager.class).getExecutors().entrySet()) {
+            MonitoredExecutor executor = entry.getValue();
+            localeManager.sendSimpleCommandMessage(context.getSender(), "command-stats-executor", StringPlaceholders.of(
+                    "pool", entry.getKey().getName(),
+                    "queued", StackerUtils.formatNumber(executor.getQueueDepth()),
+                    "completed", StackerUtils.formatNumber(executor.getCompletedTasks()),
+                    "wait", this.formatMillis(executor.getAverageWaitTime()),
+                    "run", this.formatMillis(executor.getAverageRunTime())));
+        }
+
+        MergeYields mergeYields = stackManager.getMergeYields();
+        for (Entry<EntityType, TypeYield> entry : mergeYields.getYields().entrySet()) {
+            TypeYield yield = entry.getValue();
+            if (yield.getYield() < 0)
+                continue;
+
+            localeManager.sendSimpleCommandMessage(context.getSender(), "command-stats-merge-yield", StringPlaceholders.of(
+                    "type", StackerUtils.formatName(entry.getKey().name()),
+                    "yield", StackerUtils.formatNumber(Math.round(yield.getYield() * 100)),
+                    "interval", StackerUtils.formatNumber(yield.getInterval())));
+        }
+    }
+
+    private String formatPassTime(long passTime) {
+        return passTime < 0 ? "-" : StackerUtils.formatNumber(passTime);
+    }
+
+    private String formatMillis(double millis) {
+        return String.format("%.2f", millis);
     }
 
     @Override
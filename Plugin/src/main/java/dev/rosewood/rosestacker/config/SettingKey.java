@@ -21,17 +21,55 @@ public final class SettingKey implements SettingHolder {
 
     public static final RoseSetting<List<String>> DISABLED_WORLDS = create("disabled-worlds", STRING_LIST, List.of("disabled_world_name"), "A list of worlds that the plugin is disabled in");
     public static final RoseSetting<Long> STACK_FREQUENCY = create("stack-frequency", LONG, 100L, "How often should we try to stack nearby entities?", "Higher values mean longer times between checks, but also less lag", "Values are in ticks, do not set lower than 1");
-    public static final RoseSetting<Long> UNSTACK_FREQUENCY = create("unstack-frequency", LONG, 50L, "How often should we try to unstack entities that are no longer compatible with their stack?", "Values are in ticks, set to -1 to disable");
+    public static final RoseSetting<Long> UNSTACK_FREQUENCY = create("unstack-frequency", LONG, 50L, "How often should we try to unstack entities that are no longer compatible with their stack?", "Only stacks that were renamed, leashed, bred, picked up equipment, or marked with the stacking tool are checked", "Values are in ticks, set to -1 to disable");
+    public static final RoseSetting<Long> UNSTACK_SWEEP_FREQUENCY = create("unstack-sweep-frequency", LONG, 1200L, "How often should every stack be checked for entities that are no longer compatible with it?", "This catches changes that don't come from a known event, such as plugins editing entities directly", "Values are in ticks, set to 0 to check every stack every unstack-frequency ticks");
     public static final RoseSetting<Long> ITEM_STACK_FREQUENCY = create("item-stack-frequency", LONG, 20L, "How often should we try to stack nearby items?", "Values are in ticks, do not set lower than 1");
+    public static final RoseSetting<Long> STACK_PASS_TIME_BUDGET = create("stack-pass-time-budget", LONG, 25L, "How long can a single entity or item stacking run take before it pauses?", "A paused pass picks up where it left off on its next run instead of starting over", "Values are in milliseconds, set to -1 to disable");
+    public static final RoseSetting<Integer> STACK_PARALLELISM = create("stack-parallelism", INTEGER, 1, "How many threads should be used to stack entities and items within each world?", "Worlds are split into regions of 4x4 chunks which are stacked in parallel, stacks near region edges are still stacked one at a time", "Set to 1 to stack each world on a single thread, set to -1 to use one thread per available processor");
+    public static final RoseSetting<Boolean> STACK_CLUSTER_MERGING = create("stack-cluster-merging", BOOLEAN, false, "Should entities and items be stacked by building clusters of every compatible stack in an area at once?", "Instead of searching around each stack separately, all stacks near the ones that need stacking are gathered in one sweep and grouped together", "Each cluster is merged into a single stack in one go, this is much faster for large mob farms and item piles", "Stacking in parallel with stack-parallelism does not apply when this is enabled");
+    public static final RoseSetting<Long> STACK_SCHEDULER_BUDGET = create("stack-scheduler-budget", LONG, 0L, "How many milliseconds of background work can the stacking tasks of all worlds use per tick combined?", "Tasks are never interrupted, once the budget is used up due tasks wait for the next tick, giving each world and task a fair share", "How far behind each world is can be seen with /rs stats", "Set to 0 for no limit");
+    public static final RoseSetting<Boolean> STACK_ENTITY_SNAPSHOTS = create("stack-entity-snapshots", BOOLEAN, false, "Should the entity state used for stacking be copied on the main thread once per stacking pass?", "Positions, ticks lived and whether entities are on the ground or in water are then read from the copy instead of from the entities themselves", "This makes the background stacking work thread-safe and avoids creating a Location for every read", "Stacking decisions may be based on state that is up to stack-frequency ticks old");
+    public static final RoseSetting<Boolean> STACK_ENTITY_ACTIVITY_TRACKING = create("stack-entity-activity-tracking", BOOLEAN, true, "Should entity stacking passes only check stacks that moved to another block, changed size, or were removed?", "Movement and removal are reported by events, stacks that stand still are skipped", "Only available on Paper servers, other servers always check every stack");
+    public static final RoseSetting<Long> STACK_ENTITY_ACTIVITY_SWEEP_FREQUENCY = create("stack-entity-activity-sweep-frequency", LONG, 1200L, "How often should every stack be checked anyway while stack-entity-activity-tracking is enabled?", "This catches changes that don't move the entity, such as babies growing up", "Values are in ticks, set to 0 to check every stack every stack-frequency ticks");
     public static final RoseSetting<Long> NAMETAG_UPDATE_FREQUENCY = create("nametag-update-frequency", LONG, 30L, "How often should we update stacked entity nametags?", "Values are in ticks, do not set lower than 1");
     public static final RoseSetting<Long> HOLOGRAM_UPDATE_FREQUENCY = create("hologram-update-frequency", LONG, 20L, "How often should we update stacked block/spawner holograms?");
     public static final RoseSetting<Long> AUTOSAVE_FREQUENCY = create("autosave-frequency", LONG, 15L, "How often should we autosave all loaded stack data?", "Value is measured in minutes, set to -1 to disable");
     public static final RoseSetting<Long> ENTITY_RESCAN_FREQUENCY = create("entity-rescan-frequency", LONG, 1000L, "How often should we scan the world for missed entities?", "Sometimes entities can spawn and be missed by the plugin for unknown reasons, this fixes that", "Values are in ticks, set to -1 to disable");
+    public static final RoseSetting<Integer> ENTITY_RESCAN_CHUNKS_PER_TICK = create("entity-rescan-chunks-per-tick", INTEGER, 16, "How many chunks should be scanned for missed entities each tick?", "Each scan is spread over as many ticks as it takes to get through every loaded chunk");
+    public static final RoseSetting<Long> ENTITY_CACHE_RECONCILE_FREQUENCY = create("entity-cache-reconcile-frequency", LONG, 20L, "How often should we move cached entities that have changed chunk sections?", "Entities are added and removed from the cache as they spawn, load, and unload, this only handles movement", "Values are in ticks, do not set lower than 1");
+    public static final RoseSetting<Long> ENTITY_CACHE_REBUILD_FREQUENCY = create("entity-cache-rebuild-frequency", LONG, 6000L, "How often should we verify the entity cache against every entity in the world?", "On Paper this is a consistency check and should rarely find anything to fix", "Other servers don't tell us about every entity added to a world, there this always runs at least every 60 ticks", "Values are in ticks, set to -1 to disable");
+    public static final RoseSetting<Boolean> ENTITY_CACHE_NATIVE_QUERIES = create("entity-cache-native-queries", BOOLEAN, false, "Should nearby entity searches use the server's own entity storage instead of RoseStacker's entity cache?", "Searches from the stacking threads are queued and resolved together once per tick on the main thread", "This removes the memory used by the cache and never sees stale positions, but stacking passes wait for the next tick", "Only available on Paper servers");
+
+    public static final RoseSetting<ConfigurationSection> STACK_PROXIMITY_TIERS = create("stack-proximity-tiers", "Stacks far away from players are stacked less often", "Distances are measured horizontally from the chunk a stack is in to the nearest player in the same world");
+    public static final RoseSetting<Boolean> STACK_PROXIMITY_TIERS_ENABLED = create("stack-proximity-tiers.enabled", BOOLEAN, false, "Should stacks be stacked less often the further they are from players?");
+    public static final RoseSetting<Integer> STACK_PROXIMITY_TIERS_NEAR_DISTANCE = create("stack-proximity-tiers.near-distance", INTEGER, 64, "Stacks within this many blocks of a player are stacked every pass");
+    public static final RoseSetting<Integer> STACK_PROXIMITY_TIERS_FAR_DISTANCE = create("stack-proximity-tiers.far-distance", INTEGER, 256, "Stacks further than this many blocks from every player are stacked every far-interval passes", "Stacks between the near and far distances are stacked every mid-interval passes");
+    public static final RoseSetting<Integer> STACK_PROXIMITY_TIERS_MID_INTERVAL = create("stack-proximity-tiers.mid-interval", INTEGER, 4, "How many passes apart should stacks between the near and far distances be stacked?");
+    public static final RoseSetting<Integer> STACK_PROXIMITY_TIERS_FAR_INTERVAL = create("stack-proximity-tiers.far-interval", INTEGER, 20, "How many passes apart should stacks beyond the far distance be stacked?", "Worlds without any players use this interval for every stack");
+    public static final RoseSetting<Long> STACK_PROXIMITY_TIERS_REFRESH_FREQUENCY = create("stack-proximity-tiers.refresh-frequency", LONG, 20L, "How often should player positions be checked to update the tier of each stack?", "Values are in ticks");
+
+    public static final RoseSetting<ConfigurationSection> ADAPTIVE_STACK_FREQUENCY = create("adaptive-stack-frequency", "Entity types that rarely merge are stacked less often", "The fraction of stacking attempts that end in a merge is measured for each entity type and can be seen with /rs stats");
+    public static final RoseSetting<Boolean> ADAPTIVE_STACK_FREQUENCY_ENABLED = create("adaptive-stack-frequency.enabled", BOOLEAN, false, "Should entity types be stacked less often when their stacking attempts rarely end in a merge?", "Useful for mobs that have already been stacked and sit still, such as spawner mobs in a collection pit");
+    public static final RoseSetting<Integer> ADAPTIVE_STACK_FREQUENCY_MIN_INTERVAL = create("adaptive-stack-frequency.min-interval", INTEGER, 1, "The fewest passes apart an entity type can be stacked");
+    public static final RoseSetting<Integer> ADAPTIVE_STACK_FREQUENCY_MAX_INTERVAL = create("adaptive-stack-frequency.max-interval", INTEGER, 16, "The most passes apart an entity type can be stacked");
+    public static final RoseSetting<Double> ADAPTIVE_STACK_FREQUENCY_LOW_YIELD = create("adaptive-stack-frequency.low-yield", DOUBLE, 0.02, "When fewer than this fraction of attempts for an entity type merge, it will be stacked half as often");
+    public static final RoseSetting<Double> ADAPTIVE_STACK_FREQUENCY_HIGH_YIELD = create("adaptive-stack-frequency.high-yield", DOUBLE, 0.1, "When more than this fraction of attempts for an entity type merge, it will be stacked twice as often");
+
+    public static final RoseSetting<ConfigurationSection> EXECUTORS = create("executors", "Background work is split into separate pools so a slow task in one can't hold up another", "The pools are stacking, nametags, loot, spawners and io, their queues and timings can be seen with /rs stats");
+    public static final RoseSetting<Boolean> EXECUTORS_ENABLED = create("executors.enabled", BOOLEAN, true, "Should background work run on RoseStacker's own thread pools?", "If disabled, all background work shares the server's async scheduler");
+    public static final RoseSetting<Boolean> EXECUTORS_VIRTUAL_THREADS = create("executors.virtual-threads", BOOLEAN, false, "Should each pool use virtual threads instead of a fixed number of threads?", "Requires Java 21 or newer, the thread counts below are ignored when enabled");
+    public static final RoseSetting<Integer> EXECUTORS_STACKING_THREADS = create("executors.stacking-threads", INTEGER, 2, "How many threads should run entity and item stacking?");
+    public static final RoseSetting<Integer> EXECUTORS_NAMETAG_THREADS = create("executors.nametag-threads", INTEGER, 1, "How many threads should update nametags and holograms?");
+    public static final RoseSetting<Integer> EXECUTORS_LOOT_THREADS = create("executors.loot-threads", INTEGER, 2, "How many threads should calculate loot for stacked entity deaths?");
+    public static final RoseSetting<Integer> EXECUTORS_SPAWNER_THREADS = create("executors.spawner-threads", INTEGER, 1, "How many threads should run spawner spawning when spawn-async is enabled in the global spawner settings?");
+    public static final RoseSetting<Integer> EXECUTORS_IO_THREADS = create("executors.io-threads", INTEGER, 1, "How many threads should run downloads such as translation locales?");
 
     public static final RoseSetting<ConfigurationSection> GLOBAL_ENTITY_SETTINGS = create("global-entity-settings", "Global entity settings", "Changed values in entity_settings.yml will override these values");
     public static final RoseSetting<Boolean> ENTITY_STACKING_ENABLED = create("global-entity-settings.stacking-enabled", BOOLEAN, true, "Should entity stacking be enabled at all?");
     public static final RoseSetting<String> ENTITY_DATA_STORAGE_TYPE = create("global-entity-settings.data-storage-type", STRING, StackedEntityDataStorageType.NBT.name(), Stream.concat(Arrays.stream(new String[] { "What type of data storage should be used for stacked entities?", "Valid Values:" }), Arrays.stream(StackedEntityDataStorageType.values()).map(x -> "  " + x.name() + " - " + x.getDescription())).toArray(String[]::new));
     public static final RoseSetting<Boolean> ENTITY_INSTANT_STACK = create("global-entity-settings.instant-stack", BOOLEAN, true, "Should entities try to be stacked instantly upon spawning?", "Setting this to false may yield better performance at the cost of entities being visible before stacking");
+    public static final RoseSetting<Boolean> ENTITY_INSTANT_STACK_BATCHING = create("global-entity-settings.instant-stack-batching", BOOLEAN, false, "Should entities that spawn in the same tick be instantly stacked together in one batch?", "Instead of searching around each entity as it spawns, spawns are collected and stacked at the start of the next tick", "Spawns are merged with each other first, then with existing stacks using one shared search per entity type", "This greatly reduces the cost of large spawn bursts, at the cost of entities being visible for a single tick", "Requires instant-stack to be enabled");
+    public static final RoseSetting<Boolean> ENTITY_SPAWN_INTERCEPTION = create("global-entity-settings.spawn-interception", BOOLEAN, false, "Should entities that can join a nearby stack be added to it before they ever enter the world?", "This applies to natural spawns, breeding, patrols and entities spawned by other plugins", "The entity is folded into the stack and its spawn is cancelled, so it is never added to and then removed from the world", "This greatly reduces entity churn in farms, but other plugins will see these spawn events as cancelled");
     public static final RoseSetting<Integer> ENTITY_MIN_STACK_SIZE = create("global-entity-settings.min-stack-size", INTEGER, 2, "The minimum number of nearby entities required to form a stack", "Do not set this lower than 2");
     public static final RoseSetting<Integer> ENTITY_MAX_STACK_SIZE = create("global-entity-settings.max-stack-size", INTEGER, 128, "The maximum number of entities that can be in a single stack");
     public static final RoseSetting<Integer> ENTITY_MERGE_RADIUS = create("global-entity-settings.merge-radius", INTEGER, 5, "How close do entities need to be to merge with each other?");
@@ -74,6 +112,7 @@ public final class SettingKey implements SettingHolder {
     public static final RoseSetting<Boolean> ENTITY_DONT_STACK_CUSTOM_NAMED = create("global-entity-settings.dont-stack-custom-named", BOOLEAN, false, "Should we stack entities with custom names?");
     public static final RoseSetting<Boolean> ENTITY_DONT_STACK_IF_HAS_EQUIPMENT = create("global-entity-settings.dont-stack-if-has-equipment", BOOLEAN, true, "Should we stack entities that have equipment?", "This will ignore mobs that have standard equipment such as skeletons with unenchanted bows", "This is recommended to keep enabled to prevent item duplication when using loot-approximation");
     public static final RoseSetting<Boolean> ENTITY_DONT_STACK_IF_ACTIVE_RAIDER = create("global-entity-settings.dont-stack-if-active-raider", BOOLEAN, true, "Should we stack entities that are part of an active raid?");
+    public static final RoseSetting<Boolean> ENTITY_STACK_CONDITION_REORDERING = create("global-entity-settings.stack-condition-reordering", BOOLEAN, false, "Should the stack conditions of each entity type be reordered by how often they prevent stacking?", "Cheap conditions are always checked before expensive ones, this only changes the order of conditions that cost about the same", "Conditions that prevent stacking more often are moved forward so pairs that can't stack are rejected sooner", "Only the reason reported for why two entities can't stack may change, not whether they can");
     public static final RoseSetting<Boolean> ENTITY_STACK_FLYING_DOWNWARDS = create("global-entity-settings.stack-flying-downwards", BOOLEAN, false, "Should flying mobs always be stacked downwards?", "This is useful for mob grinders");
     public static final RoseSetting<Boolean> ENTITY_ONLY_STACK_FROM_SPAWNERS = create("global-entity-settings.only-stack-from-spawners", BOOLEAN, false, "Should we only stack entities spawned from spawners?");
     public static final RoseSetting<Boolean> ENTITY_TRIGGER_DEATH_EVENT_FOR_ENTIRE_STACK_KILL = create("global-entity-settings.trigger-death-event-for-entire-stack-kill", BOOLEAN, false, "Should an entity death event be triggered for each mob in a stack?", "If you use custom drops plugins, make sure to enable this", "Note to developers: The death events are asynchronous based on the below setting");
@@ -6,7 +6,9 @@ import org.bukkit.event.HandlerList;
 import org.jetbrains.annotations.NotNull;
 
 /**
- * Called when the size of a StackedEntity increases
+ * Called when the size of a StackedEntity increases.
+ * When called asynchronously this may come from any of the stacking threads of a world, but never from two of them at
+ * the same time.
  */
 public class EntityStackEvent extends StackEvent<StackedEntity> {
 
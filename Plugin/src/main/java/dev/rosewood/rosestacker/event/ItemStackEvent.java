@@ -1,34 +1,55 @@
 package dev.rosewood.rosestacker.event;
 
 import dev.rosewood.rosestacker.stack.StackedItem;
+import java.util.List;
 import org.bukkit.event.HandlerList;
 import org.jetbrains.annotations.NotNull;
 
 /**
- * Called when the size of a StackedItem increases
+ * Called when the size of a StackedItem increases.
+ * When called asynchronously this may come from any of the stacking threads of a world, but never from two of them at
+ * the same time.
  */
 public class ItemStackEvent extends StackEvent<StackedItem> {
 
     private static final HandlerList HANDLERS = new HandlerList();
 
-    private final StackedItem target;
+    private final List<StackedItem> targets;
 
     /**
-     * @param target The item getting stacked into the other item
+     * @param targets The items getting stacked into the other item
      * @param result The item being stacked into
      */
-    public ItemStackEvent(@NotNull StackedItem target, @NotNull StackedItem result) {
+    public ItemStackEvent(@NotNull List<StackedItem> targets, @NotNull StackedItem result) {
         super(result);
 
-        this.target = target;
+        this.targets = targets;
+    }
+
+    /**
+     * @param target The item getting stacked into the other item
+     * @param result The item being stacked into
+     */
+    public ItemStackEvent(@NotNull StackedItem target, @NotNull StackedItem result) {
+        this(List.of(target), result);
     }
 
     /**
-     * @return the StackedItem that is getting stacked
+     * @return the first StackedItem that is getting stacked
+     * @deprecated Use {@link #getTargets()}, more than one item can be stacked at once
      */
     @NotNull
+    @Deprecated
     public StackedItem getTarget() {
-        return this.target;
+        return this.targets.get(0);
+    }
+
+    /**
+     * @return the StackedItems that are getting stacked
+     */
+    @NotNull
+    public List<StackedItem> getTargets() {
+        return this.targets;
     }
 
     @Override
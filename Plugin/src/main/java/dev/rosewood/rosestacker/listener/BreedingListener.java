@@ -35,6 +35,7 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.CreatureSpawnEvent;
 import org.bukkit.event.entity.EntityBreedEvent;
+import org.bukkit.event.entity.EntityEnterLoveModeEvent;
 import org.bukkit.event.player.PlayerInteractEntityEvent;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.material.Colorable;
@@ -149,6 +150,18 @@ public class BreedingListener implements Listener {
         }, 30);
     }
 
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEnterLoveMode(EntityEnterLoveModeEvent event) {
+        this.rosePlugin.getManager(StackManager.class).requestUnstackCheck(event.getEntity());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityBreed(EntityBreedEvent event) {
+        StackManager stackManager = this.rosePlugin.getManager(StackManager.class);
+        stackManager.requestUnstackCheck(event.getMother());
+        stackManager.requestUnstackCheck(event.getFather());
+    }
+
     private void transferEntityProperties(LivingEntity parent, LivingEntity child) {
         if (parent instanceof Colorable colorableParent && child instanceof Colorable colorableChild)
             colorableChild.setColor(colorableParent.getColor());
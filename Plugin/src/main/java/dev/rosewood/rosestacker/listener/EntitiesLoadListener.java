@@ -1,6 +1,7 @@
 package dev.rosewood.rosestacker.listener;
 
 import dev.rosewood.rosegarden.RosePlugin;
+import dev.rosewood.rosestacker.manager.EntityCacheManager;
 import dev.rosewood.rosestacker.manager.StackManager;
 import dev.rosewood.rosestacker.utils.PersistentDataUtils;
 import org.bukkit.entity.Entity;
@@ -28,6 +29,7 @@ public class EntitiesLoadListener implements Listener {
             if (entity instanceof LivingEntity livingEntity && !stackManager.isAreaDisabled(livingEntity.getLocation()))
                 PersistentDataUtils.applyDisabledAi(livingEntity);
 
+        this.rosePlugin.getManager(EntityCacheManager.class).cacheEntities(event.getEntities());
         this.rosePlugin.getManager(StackManager.class).loadChunkEntities(event.getEntities());
     }
 
@@ -38,6 +40,7 @@ public class EntitiesLoadListener implements Listener {
             return;
 
         this.rosePlugin.getManager(StackManager.class).saveChunkEntities(event.getEntities(), true);
+        this.rosePlugin.getManager(EntityCacheManager.class).uncacheEntities(event.getEntities());
     }
 
 }
@@ -0,0 +1,39 @@
+package dev.rosewood.rosestacker.listener;
+
+import com.destroystokyo.paper.event.entity.EntityRemoveFromWorldEvent;
+import dev.rosewood.rosegarden.RosePlugin;
+import dev.rosewood.rosestacker.manager.StackManager;
+import io.papermc.paper.event.entity.EntityMoveEvent;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+
+/**
+ * Queues stacks for the next stacking pass when their entity moves to another block or is removed on Paper servers, so
+ * stacking passes don't need to check every stack to find the ones that changed
+ */
+public class EntityActivityListener implements Listener {
+
+    private final StackManager stackManager;
+
+    public EntityActivityListener(RosePlugin rosePlugin) {
+        this.stackManager = rosePlugin.getManager(StackManager.class);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityMove(EntityMoveEvent event) {
+        // Turning in place or moving within a block doesn't change what a stack can merge with
+        if (!event.hasChangedBlock() || !this.stackManager.isEntityActivityTracked())
+            return;
+
+        this.stackManager.markEntityDirty(event.getEntity());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntityRemoveFromWorld(EntityRemoveFromWorldEvent event) {
+        if (event.getEntity() instanceof LivingEntity livingEntity && this.stackManager.isEntityActivityTracked())
+            this.stackManager.markEntityDirty(livingEntity);
+    }
+
+}
@@ -0,0 +1,33 @@
+package dev.rosewood.rosestacker.listener;
+
+import com.destroystokyo.paper.event.entity.EntityAddToWorldEvent;
+import com.destroystokyo.paper.event.entity.EntityRemoveFromWorldEvent;
+import dev.rosewood.rosegarden.RosePlugin;
+import dev.rosewood.rosestacker.manager.EntityCacheManager;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+
+/**
+ * Keeps the {@link EntityCacheManager} up to date on Paper servers, which tell us about every entity added to or
+ * removed from a world regardless of the cause
+ */
+public class EntityCacheListener implements Listener {
+
+    private final EntityCacheManager entityCacheManager;
+
+    public EntityCacheListener(RosePlugin rosePlugin) {
+        this.entityCacheManager = rosePlugin.getManager(EntityCacheManager.class);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntityAddToWorld(EntityAddToWorldEvent event) {
+        this.entityCacheManager.preCacheEntity(event.getEntity());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntityRemoveFromWorld(EntityRemoveFromWorldEvent event) {
+        this.entityCacheManager.uncacheEntity(event.getEntity());
+    }
+
+}
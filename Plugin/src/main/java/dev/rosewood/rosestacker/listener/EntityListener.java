@@ -8,6 +8,7 @@ import dev.rosewood.rosestacker.RoseStacker;
 import dev.rosewood.rosestacker.config.SettingKey;
 import dev.rosewood.rosestacker.event.AsyncEntityDeathEvent;
 import dev.rosewood.rosestacker.manager.EntityCacheManager;
+import dev.rosewood.rosestacker.manager.ExecutorManager.Pool;
 import dev.rosewood.rosestacker.manager.StackManager;
 import dev.rosewood.rosestacker.manager.StackSettingManager;
 import dev.rosewood.rosestacker.nms.storage.EntityDataEntry;
@@ -87,6 +88,15 @@ public class EntityListener implements Listener {
             SpawnReason.BUILD_WITHER
     );
 
+    // Raids keep track of every raider they spawn, so raiders are never intercepted
+    private static final Set<SpawnReason> INTERCEPTED_SPAWN_REASONS = EnumSet.of(
+            SpawnReason.NATURAL,
+            SpawnReason.BREEDING,
+            SpawnReason.PATROL,
+            SpawnReason.CUSTOM,
+            SpawnReason.DEFAULT
+    );
+
     private final RosePlugin rosePlugin;
     private final StackManager stackManager;
     private final StackSettingManager stackSettingManager;
@@ -126,6 +136,12 @@ public class EntityListener implements Listener {
         if (!this.stackManager.isEntityStackingEnabled() || this.stackManager.isEntityStackingTemporarilyDisabled())
             return;
 
+        // Fold the entity into a nearby stack before it is added to the world
+        if (SettingKey.ENTITY_SPAWN_INTERCEPTION.get() && INTERCEPTED_SPAWN_REASONS.contains(event.getSpawnReason()) && this.stackManager.interceptSpawn(entity)) {
+            event.setCancelled(true);
+            return;
+        }
+
         Runnable task = () -> {
             // Try to immediately stack everything except bees from hives and built entities due to them duplicating
             this.rosePlugin.getManager(EntityCacheManager.class).preCacheEntity(entity);
@@ -586,7 +602,7 @@ public class EntityListener implements Listener {
         ShearedHandler shearedHandler = CompatibilityAdapter.getShearedHandler();
         List<ItemStack> drops = new ArrayList<>();
         this.stackManager.setEntityUnstackingTemporarilyDisabled(true);
-        ThreadUtils.runAsync(() -> {
+        ThreadUtils.runAsync(Pool.LOOT, () -> {
             try {
                 stackedEntity.getDataStorage().forEachTransforming(internal -> {
                     Sheep sheep = (Sheep) internal;
@@ -640,7 +656,7 @@ public class EntityListener implements Listener {
             return;
 
         AtomicInteger regrowRemaining = new AtomicInteger(regrowAmount);
-        ThreadUtils.runAsync(() -> stackedEntity.getDataStorage().forEachTransforming(internal -> {
+        ThreadUtils.runAsync(Pool.STACKING, () -> stackedEntity.getDataStorage().forEachTransforming(internal -> {
             Sheep sheep = (Sheep) internal;
             if (shearedHandler.isSheared(sheep) && regrowRemaining.getAndDecrement() > 0) {
                 shearedHandler.setSheared(sheep, false);
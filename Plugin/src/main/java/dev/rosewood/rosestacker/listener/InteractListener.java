@@ -27,6 +27,7 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.block.Action;
 import org.bukkit.event.block.BlockDispenseEvent;
 import org.bukkit.event.entity.CreatureSpawnEvent.SpawnReason;
+import org.bukkit.event.entity.PlayerLeashEntityEvent;
 import org.bukkit.event.player.PlayerInteractEntityEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.inventory.EquipmentSlot;
@@ -139,6 +140,7 @@ public class InteractListener implements Listener {
         ItemStack itemStack = event.getHand() == EquipmentSlot.HAND ? player.getInventory().getItemInMainHand() : player.getInventory().getItemInOffHand();
         if (itemStack.getType() == Material.NAME_TAG) {
             ThreadUtils.runSync(stackedEntity::updateDisplay);
+            stackManager.requestUnstackCheck(entity);
             return;
         } else if (itemStack.getType() == Material.WATER_BUCKET) {
             switch (entity.getType()) {
@@ -156,6 +158,12 @@ public class InteractListener implements Listener {
         }
     }
 
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onLeash(PlayerLeashEntityEvent event) {
+        if (event.getEntity() instanceof LivingEntity entity)
+            this.rosePlugin.getManager(StackManager.class).requestUnstackCheck(entity);
+    }
+
     @EventHandler
     public void onDispenserDispense(BlockDispenseEvent event) {
         Block block = event.getBlock();
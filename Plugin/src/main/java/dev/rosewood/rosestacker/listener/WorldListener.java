@@ -2,11 +2,14 @@ package dev.rosewood.rosestacker.listener;
 
 import dev.rosewood.rosegarden.RosePlugin;
 import dev.rosewood.rosegarden.utils.NMSUtil;
+import dev.rosewood.rosestacker.manager.EntityCacheManager;
+import dev.rosewood.rosestacker.manager.ExecutorManager.Pool;
 import dev.rosewood.rosestacker.manager.StackManager;
 import dev.rosewood.rosestacker.stack.StackingThread;
 import dev.rosewood.rosestacker.utils.PersistentDataUtils;
 import dev.rosewood.rosestacker.utils.ThreadUtils;
 import java.util.Arrays;
+import java.util.List;
 import org.bukkit.Chunk;
 import org.bukkit.block.BlockState;
 import org.bukkit.block.CreatureSpawner;
@@ -23,9 +26,11 @@ import org.bukkit.event.world.WorldUnloadEvent;
 public class WorldListener implements Listener {
 
     private final StackManager stackManager;
+    private final EntityCacheManager entityCacheManager;
 
     public WorldListener(RosePlugin rosePlugin) {
         this.stackManager = rosePlugin.getManager(StackManager.class);
+        this.entityCacheManager = rosePlugin.getManager(EntityCacheManager.class);
     }
 
     /**
@@ -59,6 +64,7 @@ public class WorldListener implements Listener {
                     if (entity instanceof LivingEntity)
                         PersistentDataUtils.applyDisabledAi((LivingEntity) entity);
 
+                this.entityCacheManager.cacheEntities(Arrays.asList(entities));
                 this.stackManager.loadChunkEntities(Arrays.asList(entities));
             }
 
@@ -70,8 +76,11 @@ public class WorldListener implements Listener {
     public void onChunkUnload(ChunkUnloadEvent event) {
         this.stackManager.saveChunkBlocks(event.getChunk(), true);
 
-        if (NMSUtil.getVersionNumber() < 17)
-            this.stackManager.saveChunkEntities(Arrays.asList(event.getChunk().getEntities()), true);
+        if (NMSUtil.getVersionNumber() < 17) {
+            List<Entity> entities = Arrays.asList(event.getChunk().getEntities());
+            this.stackManager.saveChunkEntities(entities, true);
+            this.entityCacheManager.uncacheEntities(entities);
+        }
     }
 
     @EventHandler
@@ -82,13 +91,14 @@ public class WorldListener implements Listener {
     @EventHandler
     public void onWorldUnload(WorldUnloadEvent event) {
         this.stackManager.unloadWorld(event.getWorld());
+        this.entityCacheManager.uncacheWorld(event.getWorld());
     }
 
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
         StackingThread stackingThread = this.stackManager.getStackingThread(event.getPlayer().getWorld());
         if (stackingThread != null)
-            ThreadUtils.runAsync(stackingThread::processNametags);
+            ThreadUtils.runAsync(Pool.NAMETAGS, stackingThread::processNametags);
     }
 
 }
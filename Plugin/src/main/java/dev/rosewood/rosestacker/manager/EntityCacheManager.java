@@ -4,8 +4,14 @@ import dev.rosewood.rosegarden.RosePlugin;
 import dev.rosewood.rosegarden.manager.Manager;
 import dev.rosewood.rosegarden.scheduler.task.ScheduledTask;
 import dev.rosewood.rosegarden.utils.NMSUtil;
+import dev.rosewood.rosestacker.cache.EntitySection;
+import dev.rosewood.rosestacker.cache.NativeEntityQueries;
+import dev.rosewood.rosestacker.cache.WorldEntityCache;
+import dev.rosewood.rosestacker.config.SettingKey;
+import dev.rosewood.rosestacker.engine.PackedPositions;
 import dev.rosewood.rosestacker.nms.NMSAdapter;
 import dev.rosewood.rosestacker.nms.NMSHandler;
+import dev.rosewood.rosestacker.stack.Stack;
 import dev.rosewood.rosestacker.stack.StackingThread;
 import dev.rosewood.rosestacker.utils.VersionUtils;
 import java.util.ArrayList;
@@ -14,39 +20,89 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
-import org.bukkit.util.BoundingBox;
+import org.bukkit.entity.Item;
+import org.bukkit.entity.LivingEntity;
 
+/**
+ * Keeps an index of stackable entities by the 16x16x16 chunk section they are in.
+ * The index is updated incrementally as entities spawn, load, unload, and get removed. Movement between sections is
+ * picked up by a periodic reconcile. A full rebuild against the world entity lists runs rarely on Paper as a consistency
+ * check, and every few seconds on other servers, which don't tell us about every entity that is added to a world.
+ * Queries never block and never see a cache that is being cleared or rebuilt.
+ * On Paper, the cache can instead be disabled in favor of {@link NativeEntityQueries}, which resolves the same queries
+ * against the server's entity storage once per tick.
+ */
 public class EntityCacheManager extends Manager {
 
     private static final boolean DIRECT_GETTERS = NMSUtil.isPaper() && (NMSUtil.getVersionNumber() > 20 || (NMSUtil.getVersionNumber() == 20 && NMSUtil.getMinorVersionNumber() >= 4));
+    private static final boolean WORLD_EVENTS = hasWorldEvents();
+    private static final long UNTRACKED_REBUILD_FREQUENCY = 60L;
+    private static final ThreadLocal<Location> LOCATION_BUFFER = ThreadLocal.withInitial(() -> new Location(null, 0, 0, 0));
+    private static final ThreadLocal<int[]> INDEX_BUFFER = ThreadLocal.withInitial(() -> new int[64]);
+    private static final int[] NO_INDICES = new int[0];
 
-    private final Map<ChunkLocation, Collection<Entity>> entityCache;
-    private ScheduledTask refreshTask;
+    private final Map<UUID, WorldEntityCache> worldCaches;
+    private volatile NativeEntityQueries nativeQueries;
+    private ScheduledTask reconcileTask, rebuildTask, nativeQueryTask;
 
     public EntityCacheManager(RosePlugin rosePlugin) {
         super(rosePlugin);
-        this.entityCache = new ConcurrentHashMap<>();
+        this.worldCaches = new ConcurrentHashMap<>();
     }
 
     @Override
     public void reload() {
-        this.refreshTask = this.rosePlugin.getScheduler().runTaskTimer(this::refresh, 5L, 60L);
+        if (NMSUtil.isPaper() && SettingKey.ENTITY_CACHE_NATIVE_QUERIES.get()) {
+            this.nativeQueries = new NativeEntityQueries();
+            this.nativeQueryTask = this.rosePlugin.getScheduler().runTaskTimer(this.nativeQueries::resolve, 1L, 1L);
+            return;
+        }
+
+        this.reconcileTask = this.rosePlugin.getScheduler().runTaskTimer(this::reconcile, 5L, Math.max(1L, SettingKey.ENTITY_CACHE_RECONCILE_FREQUENCY.get()));
+
+        // Always run an initial rebuild to pick up everything that existed before we were listening
+        long rebuildFrequency = SettingKey.ENTITY_CACHE_REBUILD_FREQUENCY.get();
+        if (!WORLD_EVENTS && (rebuildFrequency <= 0 || rebuildFrequency > UNTRACKED_REBUILD_FREQUENCY))
+            rebuildFrequency = UNTRACKED_REBUILD_FREQUENCY; // Without Paper's add and remove events, rebuilds are what pick up most new entities
+
+        if (rebuildFrequency > 0) {
+            this.rebuildTask = this.rosePlugin.getScheduler().runTaskTimer(this::rebuild, 5L, rebuildFrequency);
+        } else {
+            this.rebuildTask = this.rosePlugin.getScheduler().runTaskLater(this::rebuild, 5L);
+        }
     }
 
     @Override
     public void disable() {
-        this.entityCache.clear();
+        this.worldCaches.clear();
 
-        if (this.refreshTask != null) {
-            this.refreshTask.cancel();
-            this.refreshTask = null;
+        if (this.nativeQueryTask != null) {
+            this.nativeQueryTask.cancel();
+            this.nativeQueryTask = null;
+        }
+
+        if (this.nativeQueries != null) {
+            this.nativeQueries.cancel();
+            this.nativeQueries = null;
+        }
+
+        if (this.reconcileTask != null) {
+            this.reconcileTask.cancel();
+            this.reconcileTask = null;
+        }
+
+        if (this.rebuildTask != null) {
+            this.rebuildTask.cancel();
+            this.rebuildTask = null;
         }
     }
 
@@ -59,62 +115,241 @@ public class EntityCacheManager extends Manager {
      * @return A Set of nearby entities
      */
     public Collection<Entity> getNearbyEntities(Location center, double radius, Predicate<Entity> predicate) {
+        return this.getNearbyEntities(center, radius, (EntityType) null, predicate);
+    }
+
+    /**
+     * Gets nearby entities of a single type from cache, only visiting the cached entities of that type
+     *
+     * @param center The center of the area to check
+     * @param radius The radius to check around
+     * @param entityType The type of entity to get
+     * @return A Set of nearby entities
+     */
+    public Collection<Entity> getNearbyEntities(Location center, double radius, EntityType entityType) {
+        return this.getNearbyEntities(center, radius, entityType, x -> true);
+    }
+
+    /**
+     * Gets nearby entities of a single type from cache, only visiting the cached entities of that type
+     *
+     * @param center The center of the area to check
+     * @param radius The radius to check around
+     * @param entityType The type of entity to get, or null for all types
+     * @param predicate Conditions to be met
+     * @return A Set of nearby entities
+     */
+    public Collection<Entity> getNearbyEntities(Location center, double radius, EntityType entityType, Predicate<Entity> predicate) {
+        Set<Entity> nearbyEntities = new HashSet<>();
+        this.visitNearby(center, radius, entityType, predicate, x -> {
+            nearbyEntities.add(x);
+            return 0;
+        });
+        return nearbyEntities;
+    }
+
+    /**
+     * Gets nearby entities of multiple types from cache, only visiting the cached entities of those types
+     *
+     * @param center The center of the area to check
+     * @param radius The radius to check around
+     * @param entityTypes The types of entity to get
+     * @param predicate Conditions to be met
+     * @return A Set of nearby entities
+     */
+    public Collection<Entity> getNearbyEntities(Location center, double radius, Collection<EntityType> entityTypes, Predicate<Entity> predicate) {
         Set<Entity> nearbyEntities = new HashSet<>();
+        for (EntityType entityType : entityTypes) {
+            this.visitNearby(center, radius, entityType, predicate, x -> {
+                nearbyEntities.add(x);
+                return 0;
+            });
+        }
+        return nearbyEntities;
+    }
+
+    /**
+     * Passes each nearby cached entity of a type to a consumer without collecting them first
+     *
+     * @param center The center of the area to check
+     * @param radius The radius to check around
+     * @param entityType The type of entity to visit, or null for all types
+     * @param consumer The consumer to pass each nearby entity to
+     */
+    public void forEachNearby(Location center, double radius, EntityType entityType, Consumer<Entity> consumer) {
+        this.visitNearby(center, radius, entityType, x -> true, x -> {
+            consumer.accept(x);
+            return 0;
+        });
+    }
+
+    /**
+     * Counts the nearby cached entities of a type without collecting them
+     *
+     * @param center The center of the area to check
+     * @param radius The radius to check around
+     * @param entityType The type of entity to count, or null for all types
+     * @param predicate Conditions to be met
+     * @return the number of nearby entities
+     */
+    public int countNearby(Location center, double radius, EntityType entityType, Predicate<Entity> predicate) {
+        return this.visitNearby(center, radius, entityType, predicate, x -> 1);
+    }
+
+    /**
+     * Counts the nearby cached entities of multiple types without collecting them
+     *
+     * @param center The center of the area to check
+     * @param radius The radius to check around
+     * @param entityTypes The types of entity to count
+     * @param predicate Conditions to be met
+     * @return the number of nearby entities
+     */
+    public int countNearby(Location center, double radius, Collection<EntityType> entityTypes, Predicate<Entity> predicate) {
+        int count = 0;
+        for (EntityType entityType : entityTypes)
+            count += this.visitNearby(center, radius, entityType, predicate, x -> 1);
+        return count;
+    }
+
+    /**
+     * Sums the stack sizes of the nearby cached entities of multiple types without collecting them.
+     * Entities and items that are not stacked count as one.
+     *
+     * @param center The center of the area to check
+     * @param radius The radius to check around
+     * @param entityTypes The types of entity to sum the stack sizes of
+     * @return the total stack size of the nearby entities
+     */
+    public int sumStackSizesNearby(Location center, double radius, Collection<EntityType> entityTypes) {
+        StackManager stackManager = this.rosePlugin.getManager(StackManager.class);
+        ToIntFunction<Entity> stackSize = entity -> {
+            Stack<?> stack = null;
+            if (entity instanceof LivingEntity livingEntity) {
+                stack = stackManager.getStackedEntity(livingEntity);
+            } else if (entity instanceof Item item) {
+                stack = stackManager.getStackedItem(item);
+            }
+            return stack == null ? 1 : stack.getStackSize();
+        };
+
+        int total = 0;
+        for (EntityType entityType : entityTypes)
+            total += this.visitNearby(center, radius, entityType, x -> true, stackSize);
+        return total;
+    }
+
+    /**
+     * Walks the cached entities of a type within the area, passing each one that passes the predicate to the visitor once
+     *
+     * @return the sum of the values returned by the visitor
+     */
+    private int visitNearby(Location center, double radius, EntityType entityType, Predicate<Entity> predicate, ToIntFunction<Entity> visitor) {
         World world = center.getWorld();
         if (world == null)
-            return nearbyEntities;
-
-        BoundingBox boundingBox = new BoundingBox(
-                center.getX() - radius,
-                center.getY() - radius,
-                center.getZ() - radius,
-                center.getX() + radius,
-                center.getY() + radius,
-                center.getZ() + radius
-        );
-
-        int minX = (int) boundingBox.getMinX() >> 4;
-        int maxX = (int) boundingBox.getMaxX() >> 4;
-        int minY = (int) boundingBox.getMinY() >> 4;
-        int maxY = (int) boundingBox.getMaxY() >> 4;
-        int minZ = (int) boundingBox.getMinZ() >> 4;
-        int maxZ = (int) boundingBox.getMaxZ() >> 4;
-
-        Location location = center.clone(); // re-use location object to dump positions so we aren't constantly remaking Location objects
-        for (int x = minX; x <= maxX; x++) {
-            for (int y = minY; y <= maxY; y++) {
-                for (int z = minZ; z <= maxZ; z++) {
-                    Collection<Entity> entities = this.entityCache.get(new ChunkLocation(world.getName(), x, y, z));
-                    if (entities == null)
+            return 0;
+
+        double minX = center.getX() - radius;
+        double minY = center.getY() - radius;
+        double minZ = center.getZ() - radius;
+        double maxX = center.getX() + radius;
+        double maxY = center.getY() + radius;
+        double maxZ = center.getZ() + radius;
+
+        NativeEntityQueries nativeQueries = this.nativeQueries;
+        if (nativeQueries != null) {
+            List<Entity> entities = nativeQueries.query(world, minX, minY, minZ, maxX, maxY, maxZ);
+            return this.filter(minX, minY, minZ, maxX, maxY, maxZ, entities, matchingType(entityType).and(predicate), visitor);
+        }
+
+        WorldEntityCache worldCache = this.worldCaches.get(world.getUID());
+        if (worldCache == null)
+            return 0;
+
+        int minSectionX = EntitySection.toSection(minX);
+        int maxSectionX = EntitySection.toSection(maxX);
+        int minSectionY = EntitySection.toSection(minY);
+        int maxSectionY = EntitySection.toSection(maxY);
+        int minSectionZ = EntitySection.toSection(minZ);
+        int maxSectionZ = EntitySection.toSection(maxZ);
+
+        int total = 0;
+        for (int x = minSectionX; x <= maxSectionX; x++) {
+            for (int y = minSectionY; y <= maxSectionY; y++) {
+                for (int z = minSectionZ; z <= maxSectionZ; z++) {
+                    EntitySection section = worldCache.getSection(EntitySection.key(x, y, z));
+                    if (section == null)
                         continue;
 
-                    this.filter(location, boundingBox, entities, predicate, nearbyEntities);
+                    if (entityType != null) {
+                        PackedPositions<Entity> positions = section.getPositions(entityType.ordinal());
+                        if (positions != null)
+                            total += this.filter(minX, minY, minZ, maxX, maxY, maxZ, positions, predicate, visitor, worldCache, section);
+                    } else {
+                        for (int i = 0; i < EntitySection.getBucketCount(); i++) {
+                            PackedPositions<Entity> positions = section.getPositions(i);
+                            if (positions != null)
+                                total += this.filter(minX, minY, minZ, maxX, maxY, maxZ, positions, predicate, visitor, worldCache, section);
+                        }
+                    }
                 }
             }
         }
 
-        return nearbyEntities;
+        return total;
     }
 
-    private void filter(Location location, BoundingBox boundingBox, Collection<Entity> entities, Predicate<Entity> predicate, Set<Entity> collector) {
-        if (DIRECT_GETTERS) {
-            for (Entity entity : entities) {
-                if (boundingBox.contains(entity.getX(), entity.getY(), entity.getZ())
-                        && predicate.test(entity)
-                        && entity.isValid())
-                    collector.add(entity);
-            }
-        } else {
-            for (Entity entity : entities) {
-                entity.getLocation(location);
-                if (boundingBox.contains(location.getX(), location.getY(), location.getZ())
+    private int filter(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, Collection<Entity> entities, Predicate<Entity> predicate, ToIntFunction<Entity> visitor) {
+        int total = 0;
+        for (Entity entity : entities)
+            if (isWithin(minX, minY, minZ, maxX, maxY, maxZ, entity) && predicate.test(entity) && entity.isValid())
+                total += visitor.applyAsInt(entity);
+        return total;
+    }
+
+    /**
+     * Narrows a bucket down using its packed positions, then checks the entities left over against where they are now.
+     * An entity changing sections is briefly in both of them, it is only visited in the one it is cached in. This also
+     * skips the entities that have left the section since its positions were last refreshed.
+     *
+     * @return the sum of the values returned by the visitor
+     */
+    private int filter(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, PackedPositions<Entity> positions, Predicate<Entity> predicate, ToIntFunction<Entity> visitor, WorldEntityCache worldCache, EntitySection section) {
+        int[] indices = INDEX_BUFFER.get();
+        if (indices.length < positions.size())
+            indices = new int[Math.max(positions.size(), indices.length * 2)];
+        INDEX_BUFFER.set(NO_INDICES); // The visitor might search again on this thread, don't let it overwrite our indices
+
+        try {
+            int count = positions.filter(minX, minY, minZ, maxX, maxY, maxZ, indices);
+            int total = 0;
+            for (int i = 0; i < count; i++) {
+                Entity entity = positions.get(indices[i]);
+                if (worldCache.isCachedIn(entity, section)
+                        && isWithin(minX, minY, minZ, maxX, maxY, maxZ, entity)
                         && predicate.test(entity)
                         && entity.isValid())
-                    collector.add(entity);
+                    total += visitor.applyAsInt(entity);
             }
+            return total;
+        } finally {
+            INDEX_BUFFER.set(indices);
         }
     }
 
+    private static boolean isWithin(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, Entity entity) {
+        if (DIRECT_GETTERS)
+            return contains(minX, minY, minZ, maxX, maxY, maxZ, entity.getX(), entity.getY(), entity.getZ());
+
+        Location location = LOCATION_BUFFER.get(); // re-use location object to dump positions so we aren't constantly remaking Location objects
+        entity.getLocation(location);
+        return contains(minX, minY, minZ, maxX, maxY, maxZ, location.getX(), location.getY(), location.getZ());
+    }
+
+    private static boolean contains(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, double x, double y, double z) {
+        return x >= minX && x < maxX && y >= minY && y < maxY && z >= minZ && z < maxZ;
+    }
+
     /**
      * Gets entities in the Chunk of a Location
      *
@@ -123,86 +358,281 @@ public class EntityCacheManager extends Manager {
      * @return A Set of entities in the chunk
      */
     public Collection<Entity> getEntitiesInChunk(Location location, Predicate<Entity> predicate) {
+        return this.getEntitiesInChunk(location, null, predicate);
+    }
+
+    /**
+     * Gets entities of a single type in the Chunk of a Location, only visiting the cached entities of that type
+     *
+     * @param location The Location of the Chunk
+     * @param entityType The type of entity to get, or null for all types
+     * @param predicate Conditions to be met
+     * @return A Set of entities in the chunk
+     */
+    public Collection<Entity> getEntitiesInChunk(Location location, EntityType entityType, Predicate<Entity> predicate) {
         World world = location.getWorld();
         if (world == null)
             return new ArrayList<>();
 
         int x = location.getBlockX() >> 4;
         int z = location.getBlockZ() >> 4;
+
+        NativeEntityQueries nativeQueries = this.nativeQueries;
+        if (nativeQueries != null) {
+            Set<Entity> chunkEntities = new HashSet<>();
+            Predicate<Entity> filter = matchingType(entityType).and(predicate);
+            for (Entity entity : nativeQueries.query(world, x << 4, world.getMinHeight(), z << 4, (x << 4) + 16, world.getMaxHeight(), (z << 4) + 16)) {
+                // The area query matches bounding boxes, only keep entities actually standing in this chunk
+                Location entityLocation = entity.getLocation();
+                if (entityLocation.getBlockX() >> 4 == x && entityLocation.getBlockZ() >> 4 == z && filter.test(entity) && entity.isValid())
+                    chunkEntities.add(entity);
+            }
+            return chunkEntities;
+        }
+
+        WorldEntityCache worldCache = this.worldCaches.get(world.getUID());
+        if (worldCache == null)
+            return new ArrayList<>();
+
         int minY = world.getMinHeight() >> 4;
         int maxY = world.getMaxHeight() >> 4;
 
-        Set<Entity> entities = new HashSet<>();
+        Set<Entity> nearbyEntities = new HashSet<>();
         for (int y = minY; y <= maxY; y++) {
-            Collection<Entity> chunkEntities = this.entityCache.get(new ChunkLocation(world.getName(), x, y, z));
-            if (chunkEntities != null)
-                entities.addAll(chunkEntities);
-        }
+            EntitySection section = worldCache.getSection(EntitySection.key(x, y, z));
+            if (section == null)
+                continue;
 
-        Set<Entity> nearbyEntities = new HashSet<>();
-        for (Entity entity : entities)
-            if (predicate.test(entity) && entity.isValid())
-                nearbyEntities.add(entity);
+            if (entityType != null) {
+                Collection<Entity> entities = section.getEntities(entityType);
+                if (entities != null)
+                    for (Entity entity : entities)
+                        if (predicate.test(entity) && entity.isValid())
+                            nearbyEntities.add(entity);
+            } else {
+                for (int i = 0; i < EntitySection.getBucketCount(); i++) {
+                    Collection<Entity> entities = section.getBucket(i);
+                    if (entities != null)
+                        for (Entity entity : entities)
+                            if (predicate.test(entity) && entity.isValid())
+                                nearbyEntities.add(entity);
+                }
+            }
+        }
 
         return nearbyEntities;
     }
 
+    /**
+     * Gets the entities of a single type in a set of chunk sections, used to gather every candidate for a batch of
+     * stacks at once instead of searching around each stack separately
+     *
+     * @param world The World
+     * @param sectionKeys The packed section coordinates, see {@link EntitySection#key(int, int, int)}
+     * @param entityType The type of entity to get
+     * @return A Set of entities in the sections, or null if the entities could not be queried from the server in time
+     */
+    public Set<Entity> getEntitiesInSections(World world, Collection<Long> sectionKeys, EntityType entityType) {
+        Set<Entity> sectionEntities = new HashSet<>();
+        NativeEntityQueries nativeQueries = this.nativeQueries;
+        if (nativeQueries != null) {
+            Map<Long, List<Entity>> sections = nativeQueries.querySections(world, sectionKeys);
+            if (sections == null)
+                return null;
+
+            for (List<Entity> entities : sections.values())
+                for (Entity entity : entities)
+                    if (entity.getType() == entityType && entity.isValid())
+                        sectionEntities.add(entity);
+            return sectionEntities;
+        }
+
+        WorldEntityCache worldCache = this.worldCaches.get(world.getUID());
+        if (worldCache == null)
+            return sectionEntities;
+
+        for (long key : sectionKeys) {
+            EntitySection section = worldCache.getSection(key);
+            if (section == null)
+                continue;
+
+            Collection<Entity> entities = section.getEntities(entityType);
+            if (entities != null)
+                for (Entity entity : entities)
+                    if (entity.isValid())
+                        sectionEntities.add(entity);
+        }
+
+        return sectionEntities;
+    }
+
+    /**
+     * Looks up a set of chunk sections ahead of a stacking run when entities are queried from the server, so the
+     * searches the run makes within them don't each have to wait on the main thread. Does nothing while the entity
+     * cache is in use.
+     *
+     * @param world The World
+     * @param sectionKeys The packed section coordinates, see {@link EntitySection#key(int, int, int)}
+     * @return a task that drops the looked up sections once the run is over, or null if the entities could not be
+     * queried from the server in time
+     */
+    public Runnable prefetchSections(World world, Collection<Long> sectionKeys) {
+        NativeEntityQueries nativeQueries = this.nativeQueries;
+        if (nativeQueries == null)
+            return () -> { };
+
+        Map<Long, List<Entity>> sections = nativeQueries.prefetch(world, sectionKeys);
+        if (sections == null)
+            return null;
+        return () -> nativeQueries.release(world, sections);
+    }
+
+    /**
+     * @return true if entities are queried from the server instead of the entity cache
+     */
+    public boolean isQueryingNatively() {
+        return this.nativeQueries != null;
+    }
+
     /**
      * Forces an entry into the cache, used for newly spawned entities
      *
      * @param entity The entity to cache
      */
     public void preCacheEntity(Entity entity) {
-        Location location = entity.getLocation();
-        ChunkLocation chunkLocation = new ChunkLocation(entity.getWorld().getName(), (int) location.getX() >> 4, (int) location.getY() >> 4, (int) location.getZ() >> 4);
-        Collection<Entity> entities = this.entityCache.computeIfAbsent(chunkLocation, k -> this.createCollection());
-        entities.add(entity);
-    }
-
-    private void refresh() {
-        synchronized (this.entityCache) {
-            this.entityCache.clear();
-            NMSHandler nmsHandler = NMSAdapter.getHandler();
-            for (StackingThread stackingThread : this.rosePlugin.getManager(StackManager.class).getStackingThreads().values()) {
-                World world = stackingThread.getTargetWorld();
-                this.addWorldEntities(world, nmsHandler.getEntities(world));
-            }
+        if (!isCacheable(entity.getType()))
+            return;
+
+        WorldEntityCache worldCache = this.getWorldCache(entity.getWorld());
+        if (worldCache != null)
+            worldCache.update(entity, EntityCacheManager::readPosition);
+    }
+
+    /**
+     * Adds entities to the cache, used when entities are loaded into the world
+     *
+     * @param entities The entities to cache
+     */
+    public void cacheEntities(Collection<Entity> entities) {
+        for (Entity entity : entities)
+            this.preCacheEntity(entity);
+    }
+
+    /**
+     * Removes an entity from the cache, used when entities are removed from the world
+     *
+     * @param entity The entity to uncache
+     */
+    public void uncacheEntity(Entity entity) {
+        WorldEntityCache worldCache = this.worldCaches.get(entity.getWorld().getUID());
+        if (worldCache != null)
+            worldCache.remove(entity);
+    }
+
+    /**
+     * Removes entities from the cache, used when entities are unloaded from the world
+     *
+     * @param entities The entities to uncache
+     */
+    public void uncacheEntities(Collection<Entity> entities) {
+        for (Entity entity : entities)
+            this.uncacheEntity(entity);
+    }
+
+    /**
+     * Removes all cached entities for a World
+     *
+     * @param world The World to uncache
+     */
+    public void uncacheWorld(World world) {
+        this.worldCaches.remove(world.getUID());
+    }
+
+    /**
+     * Gets or creates the cache for a World if stacking is active in it
+     *
+     * @param world The World
+     * @return the cache for the World, or null if the World is not tracked or native queries are in use
+     */
+    private WorldEntityCache getWorldCache(World world) {
+        if (this.nativeQueries != null)
+            return null;
+
+        WorldEntityCache worldCache = this.worldCaches.get(world.getUID());
+        if (worldCache != null)
+            return worldCache;
+
+        if (this.rosePlugin.getManager(StackManager.class).getStackingThread(world) == null)
+            return null;
+
+        return this.worldCaches.computeIfAbsent(world.getUID(), x -> new WorldEntityCache(world));
+    }
+
+    /**
+     * Moves entities that have changed sections since the last reconcile and drops entities that are no longer valid.
+     * Only entities that actually changed sections are touched in the index.
+     */
+    private void reconcile() {
+        for (WorldEntityCache worldCache : this.worldCaches.values())
+            worldCache.reconcile(EntityCacheManager::readPosition);
+    }
+
+    /**
+     * Rebuilds the cache of every tracked world from the world entity lists, catching anything the events missed.
+     * Each new generation is built off to the side and published in a single swap, so readers always see either the
+     * previous or the new generation in full, never a partially built one.
+     */
+    private void rebuild() {
+        NMSHandler nmsHandler = NMSAdapter.getHandler();
+        for (StackingThread stackingThread : this.rosePlugin.getManager(StackManager.class).getStackingThreads().values()) {
+            World world = stackingThread.getTargetWorld();
+            WorldEntityCache worldCache = new WorldEntityCache(world);
+            for (Entity entity : nmsHandler.getEntities(world))
+                if (isCacheable(entity.getType()))
+                    worldCache.update(entity, EntityCacheManager::readPosition);
+
+            this.worldCaches.put(world.getUID(), worldCache);
         }
     }
 
-    private void addWorldEntities(World world, List<Entity> worldEntities) {
+    private static void readPosition(Entity entity, double[] position) {
         if (DIRECT_GETTERS) {
-            for (Entity entity : worldEntities) {
-                EntityType type = entity.getType();
-                if (type != VersionUtils.ITEM && (!type.isAlive() || type == EntityType.PLAYER || type == EntityType.ARMOR_STAND))
-                    continue;
-
-                ChunkLocation chunkLocation = new ChunkLocation(world.getName(), (int) entity.getX() >> 4, (int) entity.getY() >> 4, (int) entity.getZ() >> 4);
-                Collection<Entity> entities = this.entityCache.computeIfAbsent(chunkLocation, k -> this.createCollection());
-                entities.add(entity);
-            }
-        } else {
-            Location location = new Location(world, 0, 0, 0);
-            for (Entity entity : worldEntities) {
-                EntityType type = entity.getType();
-                if (type != VersionUtils.ITEM && (!type.isAlive() || type == EntityType.PLAYER || type == EntityType.ARMOR_STAND))
-                    continue;
-
-                entity.getLocation(location); // re-use location object to dump positions so we aren't constantly remaking Location objects
-                ChunkLocation chunkLocation = new ChunkLocation(world.getName(), (int) location.getX() >> 4, (int) location.getY() >> 4, (int) location.getZ() >> 4);
-                Collection<Entity> entities = this.entityCache.computeIfAbsent(chunkLocation, k -> this.createCollection());
-                entities.add(entity);
-            }
+            position[0] = entity.getX();
+            position[1] = entity.getY();
+            position[2] = entity.getZ();
+            return;
         }
+
+        Location location = LOCATION_BUFFER.get();
+        entity.getLocation(location); // re-use location object to dump positions so we aren't constantly remaking Location objects
+        position[0] = location.getX();
+        position[1] = location.getY();
+        position[2] = location.getZ();
     }
 
-    private Collection<Entity> createCollection() {
-        return new LinkedBlockingDeque<>();
+    private static Predicate<Entity> matchingType(EntityType entityType) {
+        if (entityType == null)
+            return x -> isCacheable(x.getType());
+        return x -> x.getType() == entityType;
     }
 
     /**
-     * Represents a 16x16x16 chunk in the world
+     * @return true if the server tells us about every entity added to or removed from a world, see {@link dev.rosewood.rosestacker.listener.EntityCacheListener}
      */
-    private record ChunkLocation(String world, int x, int y, int z) { }
+    private static boolean hasWorldEvents() {
+        if (!NMSUtil.isPaper())
+            return false;
+
+        try {
+            Class.forName("com.destroystokyo.paper.event.entity.EntityRemoveFromWorldEvent");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static boolean isCacheable(EntityType type) {
+        return type == VersionUtils.ITEM || (type.isAlive() && type != EntityType.PLAYER && type != EntityType.ARMOR_STAND);
+    }
 
 }
@@ -0,0 +1,188 @@
+package dev.rosewood.rosestacker.manager;
+
+import dev.rosewood.rosegarden.RosePlugin;
+import dev.rosewood.rosegarden.config.RoseSetting;
+import dev.rosewood.rosegarden.manager.Manager;
+import dev.rosewood.rosestacker.config.SettingKey;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Runs asynchronous work on a separate executor for each subsystem, so a slow task in one can't hold up the others.
+ * Each executor keeps track of how many tasks are waiting on it and how long they wait and run for.
+ */
+public class ExecutorManager extends Manager {
+
+    private volatile Map<Pool, MonitoredExecutor> executors;
+
+    public ExecutorManager(RosePlugin rosePlugin) {
+        super(rosePlugin);
+
+        this.executors = Collections.emptyMap();
+    }
+
+    @Override
+    public void reload() {
+        if (!SettingKey.EXECUTORS_ENABLED.get())
+            return;
+
+        boolean virtualThreads = SettingKey.EXECUTORS_VIRTUAL_THREADS.get();
+        Map<Pool, MonitoredExecutor> executors = new EnumMap<>(Pool.class);
+        for (Pool pool : Pool.values())
+            executors.put(pool, new MonitoredExecutor(this.createExecutor(pool, virtualThreads)));
+        this.executors = executors;
+    }
+
+    @Override
+    public void disable() {
+        Map<Pool, MonitoredExecutor> executors = this.executors;
+        this.executors = Collections.emptyMap();
+        executors.values().forEach(MonitoredExecutor::shutdown);
+    }
+
+    /**
+     * Runs a task on the executor of a pool
+     *
+     * @param pool The pool to run the task in
+     * @param runnable The task to run
+     * @return true if the task was accepted, false if dedicated executors are disabled or shut down
+     */
+    public boolean execute(Pool pool, Runnable runnable) {
+        MonitoredExecutor executor = this.executors.get(pool);
+        return executor != null && executor.execute(runnable);
+    }
+
+    /**
+     * @return a view of the executor of each pool, empty if dedicated executors are disabled
+     */
+    public Map<Pool, MonitoredExecutor> getExecutors() {
+        return Collections.unmodifiableMap(this.executors);
+    }
+
+    private ExecutorService createExecutor(Pool pool, boolean virtualThreads) {
+        if (virtualThreads) {
+            try {
+                // Virtual threads need Java 21, we still compile against 17
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                this.rosePlugin.getLogger().log(Level.WARNING, "Virtual threads are not available, falling back to platform threads", e);
+            }
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, pool.getThreadsSetting().get()), runnable -> {
+            Thread thread = new Thread(runnable, "RoseStacker-" + pool.getName() + "-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public enum Pool {
+        STACKING("Stacking", SettingKey.EXECUTORS_STACKING_THREADS),
+        NAMETAGS("Nametags", SettingKey.EXECUTORS_NAMETAG_THREADS),
+        LOOT("Loot", SettingKey.EXECUTORS_LOOT_THREADS),
+        SPAWNERS("Spawners", SettingKey.EXECUTORS_SPAWNER_THREADS),
+        IO("IO", SettingKey.EXECUTORS_IO_THREADS);
+
+        private final String name;
+        private final RoseSetting<Integer> threadsSetting;
+
+        Pool(String name, RoseSetting<Integer> threadsSetting) {
+            this.name = name;
+            this.threadsSetting = threadsSetting;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        private RoseSetting<Integer> getThreadsSetting() {
+            return this.threadsSetting;
+        }
+    }
+
+    public static class MonitoredExecutor {
+
+        private final ExecutorService executor;
+        private final AtomicInteger queued;
+        private final AtomicLong completed, totalWaitNanos, totalRunNanos;
+
+        private MonitoredExecutor(ExecutorService executor) {
+            this.executor = executor;
+            this.queued = new AtomicInteger();
+            this.completed = new AtomicLong();
+            this.totalWaitNanos = new AtomicLong();
+            this.totalRunNanos = new AtomicLong();
+        }
+
+        private boolean execute(Runnable runnable) {
+            long submitted = System.nanoTime();
+            this.queued.incrementAndGet();
+            try {
+                this.executor.execute(() -> {
+                    long started = System.nanoTime();
+                    this.queued.decrementAndGet();
+                    try {
+                        runnable.run();
+                    } finally {
+                        long finished = System.nanoTime();
+                        this.totalWaitNanos.addAndGet(started - submitted);
+                        this.totalRunNanos.addAndGet(finished - started);
+                        this.completed.incrementAndGet();
+                    }
+                });
+                return true;
+            } catch (RejectedExecutionException e) {
+                this.queued.decrementAndGet();
+                return false;
+            }
+        }
+
+        private void shutdown() {
+            this.executor.shutdown();
+        }
+
+        /**
+         * @return the number of tasks waiting to be run
+         */
+        public int getQueueDepth() {
+            return this.queued.get();
+        }
+
+        /**
+         * @return the number of tasks that have finished running
+         */
+        public long getCompletedTasks() {
+            return this.completed.get();
+        }
+
+        /**
+         * @return the average time in milliseconds tasks waited before they started running
+         */
+        public double getAverageWaitTime() {
+            return this.average(this.totalWaitNanos.get());
+        }
+
+        /**
+         * @return the average time in milliseconds tasks took to run
+         */
+        public double getAverageRunTime() {
+            return this.average(this.totalRunNanos.get());
+        }
+
+        private double average(long totalNanos) {
+            long completed = this.completed.get();
+            return completed == 0 ? 0 : totalNanos / (double) completed / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+    }
+
+}
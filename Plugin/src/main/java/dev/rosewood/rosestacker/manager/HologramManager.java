@@ -4,6 +4,7 @@ import dev.rosewood.rosegarden.RosePlugin;
 import dev.rosewood.rosegarden.manager.Manager;
 import dev.rosewood.rosegarden.scheduler.task.ScheduledTask;
 import dev.rosewood.rosestacker.config.SettingKey;
+import dev.rosewood.rosestacker.manager.ExecutorManager.Pool;
 import dev.rosewood.rosestacker.nms.NMSAdapter;
 import dev.rosewood.rosestacker.nms.NMSHandler;
 import dev.rosewood.rosestacker.nms.hologram.Hologram;
@@ -80,7 +81,7 @@ public class HologramManager extends Manager implements Listener {
 
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
-        ThreadUtils.runAsync(() -> {
+        ThreadUtils.runAsync(Pool.NAMETAGS, () -> {
             Player player = event.getPlayer();
             for (Hologram hologram : this.holograms.values())
                 this.updateWatcher(player, hologram);
@@ -89,7 +90,7 @@ public class HologramManager extends Manager implements Listener {
 
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
-        ThreadUtils.runAsync(() -> {
+        ThreadUtils.runAsync(Pool.NAMETAGS, () -> {
             Player player = event.getPlayer();
             for (Hologram hologram : this.holograms.values())
                 hologram.removeWatcher(player);
@@ -8,6 +8,7 @@ import dev.rosewood.rosegarden.RosePlugin;
 import dev.rosewood.rosegarden.manager.AbstractLocaleManager;
 import dev.rosewood.rosegarden.utils.HexUtils;
 import dev.rosewood.rosegarden.utils.StringPlaceholders;
+import dev.rosewood.rosestacker.manager.ExecutorManager.Pool;
 import dev.rosewood.rosestacker.manager.LocaleManager.TranslationResponse.Result;
 import dev.rosewood.rosestacker.utils.StackerUtils;
 import dev.rosewood.rosestacker.utils.ThreadUtils;
@@ -74,7 +75,7 @@ public class LocaleManager extends AbstractLocaleManager {
     }
 
     public void fetchMinecraftTranslationLocales() {
-        ThreadUtils.runAsync(() -> {
+        ThreadUtils.runAsync(Pool.IO, () -> {
             List<String> locales = new ArrayList<>();
             String queryLink = "https://api.github.com/repos/InventivetalentDev/minecraft-assets/contents/assets/minecraft/lang?ref=" + StackerUtils.MAX_SUPPORTED_LOCALE_VERSION;
 
@@ -101,7 +102,7 @@ public class LocaleManager extends AbstractLocaleManager {
     }
 
     public void getMinecraftTranslationValues(String locale, Consumer<TranslationResponse> callback) {
-        ThreadUtils.runAsync(() -> {
+        ThreadUtils.runAsync(Pool.IO, () -> {
             Map<Material, String> materialValues = new EnumMap<>(Material.class);
             Map<EntityType, String> entityValues = new EnumMap<>(EntityType.class);
 
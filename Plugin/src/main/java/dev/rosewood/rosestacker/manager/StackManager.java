@@ -7,11 +7,13 @@ import dev.rosewood.rosestacker.config.SettingKey;
 import dev.rosewood.rosestacker.hook.WorldGuardHook;
 import dev.rosewood.rosestacker.nms.spawner.SpawnerType;
 import dev.rosewood.rosestacker.nms.storage.StackedEntityDataStorageType;
+import dev.rosewood.rosestacker.stack.MergeYields;
 import dev.rosewood.rosestacker.stack.StackedBlock;
 import dev.rosewood.rosestacker.stack.StackedEntity;
 import dev.rosewood.rosestacker.stack.StackedItem;
 import dev.rosewood.rosestacker.stack.StackedSpawner;
 import dev.rosewood.rosestacker.stack.StackingLogic;
+import dev.rosewood.rosestacker.stack.StackingScheduler;
 import dev.rosewood.rosestacker.stack.StackingThread;
 import dev.rosewood.rosestacker.stack.settings.BlockStackSettings;
 import dev.rosewood.rosestacker.stack.settings.EntityStackSettings;
@@ -26,6 +28,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import javax.annotation.Nullable;
 import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
@@ -49,9 +52,13 @@ public class StackManager extends Manager implements StackingLogic {
     private final Set<String> disabledWorldNames;
 
     private ScheduledTask autosaveTask;
+    private ForkJoinPool stackingPool;
+    private MergeYields mergeYields;
+    private StackingScheduler stackingScheduler;
 
     private boolean isEntityStackingTemporarilyDisabled;
     private boolean isEntityUnstackingTemporarilyDisabled;
+    private volatile boolean isEntityActivityTracked;
 
     private StackedEntityDataStorageType entityDataStorageType;
 
@@ -71,6 +78,18 @@ public class StackManager extends Manager implements StackingLogic {
     public void reload() {
         this.entityDataStorageType = StackedEntityDataStorageType.fromName(SettingKey.ENTITY_DATA_STORAGE_TYPE.get());
 
+        int parallelism = SettingKey.STACK_PARALLELISM.get();
+        if (parallelism < 1)
+            parallelism = Runtime.getRuntime().availableProcessors();
+        if (parallelism > 1)
+            this.stackingPool = new ForkJoinPool(parallelism);
+
+        this.mergeYields = new MergeYields(SettingKey.ADAPTIVE_STACK_FREQUENCY_ENABLED.get(), SettingKey.ADAPTIVE_STACK_FREQUENCY_MIN_INTERVAL.get(),
+                SettingKey.ADAPTIVE_STACK_FREQUENCY_MAX_INTERVAL.get(), SettingKey.ADAPTIVE_STACK_FREQUENCY_LOW_YIELD.get(), SettingKey.ADAPTIVE_STACK_FREQUENCY_HIGH_YIELD.get());
+
+        this.stackingScheduler = new StackingScheduler(this.rosePlugin, SettingKey.STACK_SCHEDULER_BUDGET.get());
+        this.stackingScheduler.start();
+
         // Load a new StackingThread per world
         Bukkit.getWorlds().forEach(this::loadWorld);
 
@@ -111,6 +130,16 @@ public class StackManager extends Manager implements StackingLogic {
         this.stackingThreads.values().forEach(StackingThread::close);
         this.stackingThreads.clear();
 
+        if (this.stackingScheduler != null) {
+            this.stackingScheduler.stop();
+            this.stackingScheduler = null;
+        }
+
+        if (this.stackingPool != null) {
+            this.stackingPool.shutdown();
+            this.stackingPool = null;
+        }
+
         this.disabledWorldNames.clear();
     }
 
@@ -449,6 +478,29 @@ public class StackManager extends Manager implements StackingLogic {
         return this.stackingThreads;
     }
 
+    /**
+     * @return the pool that regions of a world are stacked in parallel on, or null if each world is stacked on a single thread
+     */
+    @Nullable
+    public ForkJoinPool getStackingPool() {
+        return this.stackingPool;
+    }
+
+    /**
+     * @return the scheduler that runs the recurring tasks of every StackingThread
+     */
+    public StackingScheduler getStackingScheduler() {
+        return this.stackingScheduler;
+    }
+
+    /**
+     * @return the merge yields of each entity type, shared by every StackingThread
+     */
+    @NotNull
+    public MergeYields getMergeYields() {
+        return this.mergeYields;
+    }
+
     /**
      * Creates a StackingThread for the given World
      *
@@ -589,6 +641,65 @@ public class StackManager extends Manager implements StackingLogic {
         return this.isEntityUnstackingTemporarilyDisabled;
     }
 
+    /**
+     * Marks entity movement and removal as reported by events, allowing stacking passes to only process stacks that
+     * have changed instead of checking every stack
+     *
+     * @param tracked true if entity activity events are being listened to, otherwise false
+     */
+    public void setEntityActivityTracked(boolean tracked) {
+        this.isEntityActivityTracked = tracked;
+    }
+
+    /**
+     * @return true if entity movement and removal are reported by events and stacking passes should rely on them,
+     * otherwise false
+     */
+    public boolean isEntityActivityTracked() {
+        return this.isEntityActivityTracked && SettingKey.STACK_ENTITY_ACTIVITY_TRACKING.get();
+    }
+
+    /**
+     * Queues an entity's stack to be checked for stacking on the next stacking pass
+     *
+     * @param livingEntity The entity that moved, changed, or was removed
+     */
+    public void markEntityDirty(LivingEntity livingEntity) {
+        StackingThread stackingThread = this.getStackingThread(livingEntity.getWorld());
+        if (stackingThread == null)
+            return;
+
+        StackedEntity stackedEntity = stackingThread.getStackedEntity(livingEntity);
+        if (stackedEntity != null)
+            stackingThread.markEntityDirty(stackedEntity);
+    }
+
+    /**
+     * Queues an entity's stack to be checked for entities that are no longer compatible with it
+     *
+     * @param livingEntity The entity that changed in a way that may make it no longer stack
+     */
+    public void requestUnstackCheck(LivingEntity livingEntity) {
+        StackingThread stackingThread = this.getStackingThread(livingEntity.getWorld());
+        if (stackingThread == null)
+            return;
+
+        StackedEntity stackedEntity = stackingThread.getStackedEntity(livingEntity);
+        if (stackedEntity != null)
+            stackingThread.requestUnstackCheck(stackedEntity);
+    }
+
+    /**
+     * Tries to fold an entity that is about to be added to the world into a nearby stack instead
+     *
+     * @param livingEntity The entity that is about to be added to the world
+     * @return true if the entity was added to an existing stack and should not be spawned, false otherwise
+     */
+    public boolean interceptSpawn(LivingEntity livingEntity) {
+        StackingThread stackingThread = this.getStackingThread(livingEntity.getWorld());
+        return stackingThread != null && stackingThread.interceptSpawn(livingEntity);
+    }
+
     /**
      * @return the current entity data storage type for newly created entity stacks
      */
@@ -8,6 +8,7 @@ import dev.rosewood.rosestacker.event.PreStackedSpawnerSpawnEvent;
 import dev.rosewood.rosestacker.hook.SpawnerFlagPersistenceHook;
 import dev.rosewood.rosestacker.hook.WorldGuardHook;
 import dev.rosewood.rosestacker.manager.EntityCacheManager;
+import dev.rosewood.rosestacker.manager.ExecutorManager.Pool;
 import dev.rosewood.rosestacker.manager.StackManager;
 import dev.rosewood.rosestacker.manager.StackSettingManager;
 import dev.rosewood.rosestacker.nms.NMSAdapter;
@@ -25,14 +26,12 @@ import dev.rosewood.rosestacker.utils.StackerUtils;
 import dev.rosewood.rosestacker.utils.ThreadUtils;
 import dev.rosewood.rosestacker.utils.VersionUtils;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
-import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -40,7 +39,6 @@ import org.bukkit.Material;
 import org.bukkit.Particle;
 import org.bukkit.World;
 import org.bukkit.block.Block;
-import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.event.entity.CreatureSpawnEvent;
@@ -147,14 +145,12 @@ public class MobSpawningMethod implements SpawningMethod {
             }
 
             EntityType entityType = stackedSpawner.getSpawnerTile().getSpawnerType().getOrThrow();
-            Predicate<Entity> predicate = entity -> entity.getType() == entityType;
-            Collection<Entity> nearbyEntities = entityCacheManager.getNearbyEntities(stackedSpawner.getLocation(), stackSettings.getSpawnRange(), predicate);
             List<StackedEntity> nearbyStackedEntities = new ArrayList<>();
-            for (Entity entity : nearbyEntities) {
+            entityCacheManager.forEachNearby(stackedSpawner.getLocation(), stackSettings.getSpawnRange(), entityType, entity -> {
                 StackedEntity stackedEntity = stackManager.getStackedEntity((LivingEntity) entity);
                 if (stackedEntity != null)
                     nearbyStackedEntities.add(stackedEntity);
-            }
+            });
 
             int successfulSpawns;
             if (!onlyCheckConditions) {
@@ -193,7 +189,7 @@ public class MobSpawningMethod implements SpawningMethod {
         };
 
         if (SettingKey.SPAWNER_SPAWN_ASYNC.get()) {
-            ThreadUtils.runAsync(spawnTask);
+            ThreadUtils.runAsync(Pool.SPAWNERS, spawnTask);
         } else {
             spawnTask.run();
         }
@@ -0,0 +1,116 @@
+package dev.rosewood.rosestacker.stack;
+
+import dev.rosewood.rosestacker.config.SettingKey;
+import java.util.Collection;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.entity.LivingEntity;
+
+/**
+ * A copy of the entity state that stacking reads, taken on the main thread once per stacking run.
+ * The state of each stack is stored in primitive arrays by index, so the asynchronous stacking work can read it without
+ * touching the entities or allocating a Location for every read. A snapshot is only attached to its stacks while the run
+ * that reads it is in progress, everything else keeps reading the live entities.
+ */
+final class EntitySnapshot {
+
+    private final StackedEntity[] stacks;
+    private final double[] x, y, z;
+    private final boolean[] onGround, inWater;
+    private final int[] ticksLived;
+    private int size;
+
+    private EntitySnapshot(int capacity) {
+        this.stacks = new StackedEntity[capacity];
+        this.x = new double[capacity];
+        this.y = new double[capacity];
+        this.z = new double[capacity];
+        this.onGround = new boolean[capacity];
+        this.inWater = new boolean[capacity];
+        this.ticksLived = new int[capacity];
+    }
+
+    /**
+     * Takes a snapshot of the given stacks, must be called on the main thread
+     *
+     * @param stackedEntities The stacks to take a snapshot of
+     * @return the snapshot
+     */
+    static EntitySnapshot capture(Collection<StackedEntity> stackedEntities) {
+        EntitySnapshot snapshot = new EntitySnapshot(stackedEntities.size());
+        boolean checkWater = SettingKey.ENTITY_DONT_STACK_IF_IN_WATER.get();
+        Location location = new Location(null, 0, 0, 0);
+        for (StackedEntity stackedEntity : stackedEntities) {
+            int index = snapshot.size;
+            if (index >= snapshot.stacks.length)
+                break; // The stacks changed while we were reading them, the rest will be picked up next time
+
+            LivingEntity entity = stackedEntity.getEntity();
+            if (entity == null || !entity.isValid())
+                continue;
+
+            entity.getLocation(location);
+            snapshot.stacks[index] = stackedEntity;
+            snapshot.x[index] = location.getX();
+            snapshot.y[index] = location.getY();
+            snapshot.z[index] = location.getZ();
+            snapshot.onGround[index] = entity.isOnGround();
+            snapshot.inWater[index] = checkWater && location.getBlock().getType() == Material.WATER;
+            snapshot.ticksLived[index] = entity.getTicksLived();
+            snapshot.size++;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Makes the stacks in this snapshot read their state from it until {@link #detach()} is called
+     */
+    void attach() {
+        for (int i = 0; i < this.size; i++)
+            this.stacks[i].setSnapshot(this, i);
+    }
+
+    /**
+     * Makes the stacks in this snapshot read their state from their entities again
+     */
+    void detach() {
+        for (int i = 0; i < this.size; i++)
+            this.stacks[i].clearSnapshot(this);
+    }
+
+    /**
+     * Checks if a stack is stored at an index of this snapshot
+     *
+     * @param stackedEntity The stack
+     * @param index The index the stack was given
+     * @return true if the index holds the state of the stack
+     */
+    boolean contains(StackedEntity stackedEntity, int index) {
+        return index >= 0 && index < this.stacks.length && this.stacks[index] == stackedEntity;
+    }
+
+    double getX(int index) {
+        return this.x[index];
+    }
+
+    double getY(int index) {
+        return this.y[index];
+    }
+
+    double getZ(int index) {
+        return this.z[index];
+    }
+
+    boolean isOnGround(int index) {
+        return this.onGround[index];
+    }
+
+    boolean isInWater(int index) {
+        return this.inWater[index];
+    }
+
+    int getTicksLived(int index) {
+        return this.ticksLived[index];
+    }
+
+}
@@ -0,0 +1,115 @@
+package dev.rosewood.rosestacker.stack;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bukkit.entity.EntityType;
+
+/**
+ * Tracks how often stacking attempts for each entity type end in a merge, and backs off how often a type is stacked
+ * when its attempts rarely succeed.
+ * Yields are measured over a window of attempts. A type whose yield falls below the low yield has its interval doubled,
+ * a type whose yield rises above the high yield has its interval halved, within the configured bounds.
+ */
+public class MergeYields {
+
+    private static final int WINDOW_SIZE = 64;
+
+    private final boolean adaptive;
+    private final int minInterval, maxInterval;
+    private final double lowYield, highYield;
+    private final Map<EntityType, TypeYield> yields;
+
+    /**
+     * @param adaptive true to adjust the interval of each type by its yield, false to only track the yields
+     * @param minInterval The fewest passes apart a type can be stacked
+     * @param maxInterval The most passes apart a type can be stacked
+     * @param lowYield The yield below which a type is stacked less often
+     * @param highYield The yield above which a type is stacked more often
+     */
+    public MergeYields(boolean adaptive, int minInterval, int maxInterval, double lowYield, double highYield) {
+        this.adaptive = adaptive;
+        this.minInterval = Math.max(1, minInterval);
+        this.maxInterval = Math.max(this.minInterval, maxInterval);
+        this.lowYield = lowYield;
+        this.highYield = highYield;
+        this.yields = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Records a stacking attempt for an entity type
+     *
+     * @param entityType The type of entity that was stacked
+     * @param merged true if the attempt merged at least one stack
+     */
+    public void recordAttempt(EntityType entityType, boolean merged) {
+        TypeYield yield = this.yields.computeIfAbsent(entityType, x -> new TypeYield(this.minInterval));
+        synchronized (yield) {
+            yield.attempts++;
+            if (merged)
+                yield.merges++;
+
+            if (yield.attempts < WINDOW_SIZE)
+                return;
+
+            yield.lastYield = (double) yield.merges / yield.attempts;
+            yield.attempts = 0;
+            yield.merges = 0;
+
+            if (!this.adaptive)
+                return;
+
+            if (yield.lastYield < this.lowYield) {
+                yield.interval = Math.min(yield.interval * 2, this.maxInterval);
+            } else if (yield.lastYield > this.highYield) {
+                yield.interval = Math.max(yield.interval / 2, this.minInterval);
+            }
+        }
+    }
+
+    /**
+     * Gets how many passes apart an entity type should be stacked
+     *
+     * @param entityType The type of entity
+     * @return the current interval of the type, 1 if it hasn't had a stacking attempt yet
+     */
+    public int getInterval(EntityType entityType) {
+        TypeYield yield = this.yields.get(entityType);
+        return yield == null ? 1 : yield.interval;
+    }
+
+    /**
+     * @return a view of the yield of each entity type that has had a stacking attempt
+     */
+    public Map<EntityType, TypeYield> getYields() {
+        return Collections.unmodifiableMap(this.yields);
+    }
+
+    public static class TypeYield {
+
+        private int attempts, merges;
+        private volatile double lastYield;
+        private volatile int interval;
+
+        private TypeYield(int interval) {
+            this.lastYield = -1;
+            this.interval = interval;
+        }
+
+        /**
+         * @return the fraction of attempts that merged over the last full window, or -1 if no window has completed yet
+         */
+        public double getYield() {
+            return this.lastYield;
+        }
+
+        /**
+         * @return how many passes apart the type is currently stacked
+         */
+        public int getInterval() {
+            return this.interval;
+        }
+
+    }
+
+}
@@ -0,0 +1,95 @@
+package dev.rosewood.rosestacker.stack;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+/**
+ * Assigns stacks to a tier by the distance from their chunk to the nearest player, deciding how often they get stacked.
+ * Near stacks are stacked every pass, mid-range stacks every few passes, and far stacks rarely.
+ * Tiers are worked out once per chunk and reset whenever player positions are refreshed.
+ */
+final class ProximityTiers {
+
+    private final double nearDistanceSqrd, farDistanceSqrd;
+    private final int midInterval, farInterval;
+    private volatile double[] playerPositions;
+    private volatile Map<Long, Integer> chunkIntervals;
+
+    /**
+     * @param nearDistance How close to a player a stack needs to be to be stacked every pass
+     * @param farDistance How far from every player a stack needs to be to be stacked every farInterval passes
+     * @param midInterval How many passes apart stacks between the near and far distances are stacked
+     * @param farInterval How many passes apart stacks beyond the far distance are stacked
+     */
+    ProximityTiers(double nearDistance, double farDistance, int midInterval, int farInterval) {
+        this.nearDistanceSqrd = nearDistance * nearDistance;
+        this.farDistanceSqrd = farDistance * farDistance;
+        this.midInterval = Math.max(1, midInterval);
+        this.farInterval = Math.max(1, farInterval);
+        this.playerPositions = new double[0];
+        this.chunkIntervals = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Snapshots the positions of the players in a world and resets the tier of every chunk
+     *
+     * @param world The world to snapshot the players of
+     */
+    void refresh(World world) {
+        List<Player> players = world.getPlayers();
+        double[] playerPositions = new double[players.size() * 2];
+        int index = 0;
+        for (Player player : players) {
+            Location location = player.getLocation();
+            if (location.getWorld() != world) // The player can switch worlds while we read them
+                continue;
+
+            playerPositions[index++] = location.getX();
+            playerPositions[index++] = location.getZ();
+        }
+
+        this.playerPositions = index == playerPositions.length ? playerPositions : Arrays.copyOf(playerPositions, index);
+        this.chunkIntervals = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets how many passes apart a stack at a position should be stacked
+     *
+     * @param x The x coordinate of the stack, NaN if it has no position
+     * @param z The z coordinate of the stack, NaN if it has no position
+     * @return the interval of the tier the stack is in, 1 if it has no position
+     */
+    int getInterval(double x, double z) {
+        if (Double.isNaN(x) || Double.isNaN(z))
+            return 1;
+
+        int chunkX = (int) Math.floor(x) >> 4;
+        int chunkZ = (int) Math.floor(z) >> 4;
+        long key = ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+        return this.chunkIntervals.computeIfAbsent(key, chunkKey -> this.computeInterval(chunkX, chunkZ));
+    }
+
+    private int computeInterval(int chunkX, int chunkZ) {
+        double centerX = (chunkX << 4) + 8;
+        double centerZ = (chunkZ << 4) + 8;
+        double[] playerPositions = this.playerPositions;
+        double closestDistanceSqrd = Double.MAX_VALUE;
+        for (int i = 0; i < playerPositions.length; i += 2) {
+            double dx = playerPositions[i] - centerX;
+            double dz = playerPositions[i + 1] - centerZ;
+            closestDistanceSqrd = Math.min(closestDistanceSqrd, dx * dx + dz * dz);
+        }
+
+        if (closestDistanceSqrd <= this.nearDistanceSqrd)
+            return 1;
+        if (closestDistanceSqrd <= this.farDistanceSqrd)
+            return this.midInterval;
+        return this.farInterval;
+    }
+
+}
@@ -0,0 +1,23 @@
+package dev.rosewood.rosestacker.stack;
+
+/**
+ * The lifecycle of a {@link StackedEntity} or {@link StackedItem} within its {@link StackingThread}
+ */
+enum StackLifecycle {
+
+    /**
+     * The stack is being created and its entity may not be in the world yet
+     */
+    NEW,
+
+    /**
+     * The stack is tracked and its entity is in the world
+     */
+    ACTIVE,
+
+    /**
+     * The stack was removed, it must not be stacked or merged into
+     */
+    REMOVED
+
+}
@@ -0,0 +1,76 @@
+package dev.rosewood.rosestacker.stack;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Collects stacks submitted from any thread for the stacking pass of a world to process.
+ * Submitting never locks, and a stack that is already waiting in the mailbox is not queued again, so the mailbox never
+ * holds more entries than there are stacks no matter how often they are submitted between drains.
+ * Only the submissions go through the mailbox, the stacks themselves are still registered and changed directly by
+ * whichever thread is handling them.
+ */
+final class StackMailbox<T> {
+
+    private final Queue<T> queue;
+    private final Set<T> queued;
+
+    StackMailbox() {
+        this.queue = new ConcurrentLinkedQueue<>();
+        this.queued = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Submits a stack to be processed by the next pass, safe to call from any thread
+     *
+     * @param stack The stack
+     */
+    void submit(T stack) {
+        if (this.queued.add(stack))
+            this.queue.offer(stack);
+    }
+
+    /**
+     * Submits stacks to be processed by the next pass, safe to call from any thread
+     *
+     * @param stacks The stacks
+     */
+    void submitAll(Collection<? extends T> stacks) {
+        for (T stack : stacks)
+            this.submit(stack);
+    }
+
+    /**
+     * Takes every stack submitted so far, must only be called by the pass that processes this mailbox.
+     * A stack submitted again while it is being taken is part of the drained stacks and is not queued a second time.
+     *
+     * @return the distinct stacks in the order they were first submitted
+     */
+    List<T> drain() {
+        List<T> drained = new ArrayList<>();
+        T stack;
+        while ((stack = this.queue.poll()) != null) {
+            this.queued.remove(stack);
+            drained.add(stack);
+        }
+        return drained;
+    }
+
+    /**
+     * @return true if nothing is waiting to be drained
+     */
+    boolean isEmpty() {
+        return this.queue.isEmpty();
+    }
+
+    void clear() {
+        this.queue.clear();
+        this.queued.clear();
+    }
+
+}
@@ -15,6 +15,7 @@ import dev.rosewood.rosestacker.hook.NPCsHook;
 import dev.rosewood.rosestacker.hook.SpawnerFlagPersistenceHook;
 import dev.rosewood.rosestacker.hook.WorldGuardHook;
 import dev.rosewood.rosestacker.manager.EntityCacheManager;
+import dev.rosewood.rosestacker.manager.ExecutorManager.Pool;
 import dev.rosewood.rosestacker.manager.LocaleManager;
 import dev.rosewood.rosestacker.manager.StackManager;
 import dev.rosewood.rosestacker.manager.StackSettingManager;
@@ -33,6 +34,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.Supplier;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -63,6 +65,8 @@ import org.jetbrains.annotations.Nullable;
 
 public class StackedEntity extends Stack<EntityStackSettings> implements Comparable<StackedEntity> {
 
+    private static final AtomicReferenceFieldUpdater<StackedEntity, StackLifecycle> LIFECYCLE = AtomicReferenceFieldUpdater.newUpdater(StackedEntity.class, StackLifecycle.class, "lifecycle");
+
     private LivingEntity entity;
     private StackedEntityDataStorage stackedEntityDataStorage;
     private int npcCheckCounter;
@@ -72,11 +76,15 @@ public class StackedEntity extends Stack<EntityStackSettings> implements Compara
     private double x, y, z;
 
     private EntityStackSettings stackSettings;
+    private volatile StackLifecycle lifecycle;
+    private volatile EntitySnapshot snapshot;
+    private volatile int snapshotIndex;
 
     public StackedEntity(LivingEntity entity, StackedEntityDataStorage stackedEntityDataStorage, boolean updateDisplay) {
         this.entity = entity;
         this.stackedEntityDataStorage = stackedEntityDataStorage;
         this.npcCheckCounter = NPCsHook.anyEnabled() ? 5 : 0;
+        this.lifecycle = StackLifecycle.ACTIVE;
 
         this.displayName = null;
         this.displayNameVisible = false;
@@ -307,7 +315,7 @@ public class StackedEntity extends Stack<EntityStackSettings> implements Compara
         };
 
         if (async && Bukkit.isPrimaryThread()) {
-            ThreadUtils.runAsync(mainTask);
+            ThreadUtils.runAsync(Pool.LOOT, mainTask);
         } else if (!async && !Bukkit.isPrimaryThread()) {
             ThreadUtils.runSync(mainTask);
         } else {
@@ -643,17 +651,14 @@ public class StackedEntity extends Stack<EntityStackSettings> implements Compara
      */
     @Override
     public int compareTo(StackedEntity stack2) {
-        Entity entity1 = this.getEntity();
-        Entity entity2 = stack2.getEntity();
-
         if (this == stack2)
             return 0;
 
         if (SettingKey.ENTITY_STACK_FLYING_DOWNWARDS.get() && this.stackSettings.getEntityTypeData().flyingMob())
-            return entity1.getLocation().getY() < entity2.getLocation().getY() ? 3 : -3;
+            return this.getY() < stack2.getY() ? 3 : -3;
 
         if (this.getStackSize() == stack2.getStackSize())
-            return entity1.getTicksLived() > entity2.getTicksLived() ? 2 : -2;
+            return this.getTicksLived() > stack2.getTicksLived() ? 2 : -2;
 
         return this.getStackSize() > stack2.getStackSize() ? 1 : -1;
     }
@@ -811,18 +816,125 @@ public class StackedEntity extends Stack<EntityStackSettings> implements Compara
         return killer.getInventory().getItemInMainHand().getEnchantmentLevel(requiredEnchantment) > 0;
     }
 
+    StackLifecycle getLifecycle() {
+        return this.lifecycle;
+    }
+
+    /**
+     * Moves this stack from one lifecycle state to another
+     *
+     * @param expected The state this stack must currently be in
+     * @param lifecycle The state to move this stack to
+     * @return true if the state was changed, false if this stack was not in the expected state
+     */
+    boolean transitionLifecycle(StackLifecycle expected, StackLifecycle lifecycle) {
+        return LIFECYCLE.compareAndSet(this, expected, lifecycle);
+    }
+
+    void markRemoved() {
+        this.lifecycle = StackLifecycle.REMOVED;
+    }
+
     /**
      * @return true if the entity has moved since the last time this method was called
      */
     public boolean hasMoved() {
-        Location location = this.entity.getLocation();
-        boolean moved = location.getX() != this.x || location.getY() != this.y || location.getZ() != this.z;
+        EntitySnapshot snapshot = this.snapshot;
+        int index = this.getSnapshotIndex(snapshot);
+        double x, y, z;
+        if (index >= 0) {
+            x = snapshot.getX(index);
+            y = snapshot.getY(index);
+            z = snapshot.getZ(index);
+        } else {
+            Location location = this.entity.getLocation();
+            x = location.getX();
+            y = location.getY();
+            z = location.getZ();
+        }
+
+        boolean moved = x != this.x || y != this.y || z != this.z;
         if (moved) {
-            this.x = location.getX();
-            this.y = location.getY();
-            this.z = location.getZ();
+            this.x = x;
+            this.y = y;
+            this.z = z;
         }
         return moved;
     }
 
+    void setSnapshot(EntitySnapshot snapshot, int index) {
+        this.snapshotIndex = index;
+        this.snapshot = snapshot;
+    }
+
+    void clearSnapshot(EntitySnapshot snapshot) {
+        if (this.snapshot == snapshot)
+            this.snapshot = null;
+    }
+
+    /**
+     * @return the index of this stack in its snapshot, or -1 if it isn't in one
+     */
+    private int getSnapshotIndex(EntitySnapshot snapshot) {
+        if (snapshot == null)
+            return -1;
+
+        int index = this.snapshotIndex;
+        return snapshot.contains(this, index) ? index : -1;
+    }
+
+    /**
+     * @return the x coordinate of the entity as of the snapshot of the stacking run in progress, or the current one otherwise
+     */
+    public double getX() {
+        EntitySnapshot snapshot = this.snapshot;
+        int index = this.getSnapshotIndex(snapshot);
+        return index >= 0 ? snapshot.getX(index) : this.entity.getLocation().getX();
+    }
+
+    /**
+     * @return the y coordinate of the entity as of the snapshot of the stacking run in progress, or the current one otherwise
+     */
+    public double getY() {
+        EntitySnapshot snapshot = this.snapshot;
+        int index = this.getSnapshotIndex(snapshot);
+        return index >= 0 ? snapshot.getY(index) : this.entity.getLocation().getY();
+    }
+
+    /**
+     * @return the z coordinate of the entity as of the snapshot of the stacking run in progress, or the current one otherwise
+     */
+    public double getZ() {
+        EntitySnapshot snapshot = this.snapshot;
+        int index = this.getSnapshotIndex(snapshot);
+        return index >= 0 ? snapshot.getZ(index) : this.entity.getLocation().getZ();
+    }
+
+    /**
+     * @return true if the entity was on the ground as of the snapshot of the stacking run in progress, or is currently otherwise
+     */
+    public boolean isOnGround() {
+        EntitySnapshot snapshot = this.snapshot;
+        int index = this.getSnapshotIndex(snapshot);
+        return index >= 0 ? snapshot.isOnGround(index) : this.entity.isOnGround();
+    }
+
+    /**
+     * @return true if the entity was in water as of the snapshot of the stacking run in progress, or is currently otherwise
+     */
+    public boolean isInWater() {
+        EntitySnapshot snapshot = this.snapshot;
+        int index = this.getSnapshotIndex(snapshot);
+        return index >= 0 ? snapshot.isInWater(index) : this.entity.getLocation().getBlock().getType() == Material.WATER;
+    }
+
+    /**
+     * @return the ticks the entity had lived as of the snapshot of the stacking run in progress, or has currently otherwise
+     */
+    public int getTicksLived() {
+        EntitySnapshot snapshot = this.snapshot;
+        int index = this.getSnapshotIndex(snapshot);
+        return index >= 0 ? snapshot.getTicksLived(index) : this.entity.getTicksLived();
+    }
+
 }
@@ -9,6 +9,7 @@ import dev.rosewood.rosestacker.manager.StackSettingManager;
 import dev.rosewood.rosestacker.nms.NMSAdapter;
 import dev.rosewood.rosestacker.stack.settings.ItemStackSettings;
 import dev.rosewood.rosestacker.utils.StackerUtils;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
@@ -23,16 +24,19 @@ public class StackedItem extends Stack<ItemStackSettings> implements Comparable<
     private static final char MAGIC_AMPERSAND = '\uFDD0';
     private static final char MAGIC_LESS_THAN = '\uFDD1';
     private static final char MAGIC_POUND     = '\uFDD2';
+    private static final AtomicReferenceFieldUpdater<StackedItem, StackLifecycle> LIFECYCLE = AtomicReferenceFieldUpdater.newUpdater(StackedItem.class, StackLifecycle.class, "lifecycle");
 
     private int size;
     private Item item;
 
     private ItemStackSettings stackSettings;
     private double x, y, z;
+    private volatile StackLifecycle lifecycle;
 
     public StackedItem(int size, Item item, boolean updateDisplay) {
         this.size = size;
         this.item = item;
+        this.lifecycle = StackLifecycle.ACTIVE;
 
         if (this.item != null) {
             this.stackSettings = RoseStacker.getInstance().getManager(StackSettingManager.class).getItemStackSettings(this.item);
@@ -178,6 +182,25 @@ public class StackedItem extends Stack<ItemStackSettings> implements Comparable<
         return this.getStackSize() > stack2.getStackSize() ? 1 : -1;
     }
 
+    StackLifecycle getLifecycle() {
+        return this.lifecycle;
+    }
+
+    /**
+     * Moves this stack from one lifecycle state to another
+     *
+     * @param expected The state this stack must currently be in
+     * @param lifecycle The state to move this stack to
+     * @return true if the state was changed, false if this stack was not in the expected state
+     */
+    boolean transitionLifecycle(StackLifecycle expected, StackLifecycle lifecycle) {
+        return LIFECYCLE.compareAndSet(this, expected, lifecycle);
+    }
+
+    void markRemoved() {
+        this.lifecycle = StackLifecycle.REMOVED;
+    }
+
     /**
      * @return true if the entity has moved since the last time this method was called, false otherwise
      */
@@ -0,0 +1,86 @@
+package dev.rosewood.rosestacker.stack;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tracks a stacking pass that may be spread across multiple runs of its task.
+ * Each run gets a time budget, once it is spent the run yields and the pass resumes from where it stopped on the next
+ * run. Only one run of a pass may be active at a time.
+ */
+final class StackingPass {
+
+    private final long budgetNanos;
+    private final AtomicBoolean running;
+    private long passStart;
+    private long runDeadline;
+    private volatile long lastCompletionNanos;
+    private volatile long passNumber;
+
+    /**
+     * @param budgetMillis The time in milliseconds each run may take before yielding, or a value below 1 for no limit
+     */
+    StackingPass(long budgetMillis) {
+        this.budgetNanos = budgetMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(budgetMillis) : -1;
+        this.running = new AtomicBoolean();
+        this.passStart = -1;
+        this.lastCompletionNanos = -1;
+    }
+
+    /**
+     * Starts a run, starting a new pass if the previous one was completed
+     *
+     * @return true if the run was started, false if another run of this pass is still active
+     */
+    boolean beginRun() {
+        if (!this.running.compareAndSet(false, true))
+            return false;
+
+        long now = System.nanoTime();
+        this.runDeadline = now + this.budgetNanos;
+        if (this.passStart == -1)
+            this.passStart = now;
+        return true;
+    }
+
+    /**
+     * @return true if the current run has spent its budget and should yield
+     */
+    boolean isOutOfTime() {
+        return this.budgetNanos > 0 && System.nanoTime() - this.runDeadline >= 0;
+    }
+
+    /**
+     * Marks the current pass as complete, the next run will start a new pass
+     */
+    void complete() {
+        if (this.passStart != -1)
+            this.lastCompletionNanos = System.nanoTime() - this.passStart;
+        this.passStart = -1;
+        this.passNumber++;
+    }
+
+    /**
+     * Ends the current run, must always be called after a successful {@link #beginRun()}
+     */
+    void endRun() {
+        this.running.set(false);
+    }
+
+    /**
+     * @return the number of the current pass, starting at 0 and increasing each time a pass is completed
+     */
+    long getPassNumber() {
+        return this.passNumber;
+    }
+
+    /**
+     * @return the wall time in milliseconds the last completed pass took from start to finish, or -1 if no pass has
+     * completed yet
+     */
+    long getLastCompletionTime() {
+        long lastCompletionNanos = this.lastCompletionNanos;
+        return lastCompletionNanos == -1 ? -1 : TimeUnit.NANOSECONDS.toMillis(lastCompletionNanos);
+    }
+
+}
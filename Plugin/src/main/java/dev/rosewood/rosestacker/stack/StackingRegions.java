@@ -0,0 +1,86 @@
+package dev.rosewood.rosestacker.stack;
+
+import dev.rosewood.rosestacker.RoseStacker;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.logging.Level;
+import org.bukkit.Location;
+
+/**
+ * Splits a batch of stacks into regions of 4x4 chunks so they can be stacked in parallel.
+ * Stacks far enough from the edges of their region that nothing they can merge with lies in another region are
+ * processed first, one task per region. The remaining stacks straddle a region boundary and are processed afterward on
+ * the calling thread, so no two workers ever merge the same stack.
+ * A stack that fails to process is logged and skipped, the rest of the batch is still processed.
+ */
+final class StackingRegions {
+
+    private static final int REGION_SHIFT = 6; // 4x4 chunks
+    private static final int REGION_SIZE = 1 << REGION_SHIFT;
+    private static final double MOVEMENT_MARGIN = 1; // Stacks can move while we work, leave them some room
+
+    private StackingRegions() {
+
+    }
+
+    /**
+     * Processes a batch of stacks in parallel by region
+     *
+     * @param pool The pool to process the interior of each region on
+     * @param batch The stacks to process
+     * @param locationFunction Gets the current location of a stack
+     * @param radiusFunction Gets how far from a stack it can merge with other stacks
+     * @param action The action to process each stack with, called from several threads at once
+     * @param <T> The type of stack
+     */
+    static <T> void process(ForkJoinPool pool, Collection<T> batch, Function<T, Location> locationFunction, ToDoubleFunction<T> radiusFunction, Consumer<T> action) {
+        Map<Long, List<T>> regions = new HashMap<>();
+        List<T> boundary = new ArrayList<>();
+        for (T stack : batch) {
+            Location location = locationFunction.apply(stack);
+            if (location == null) {
+                boundary.add(stack);
+                continue;
+            }
+
+            int regionX = (int) Math.floor(location.getX()) >> REGION_SHIFT;
+            int regionZ = (int) Math.floor(location.getZ()) >> REGION_SHIFT;
+            double reach = radiusFunction.applyAsDouble(stack) + MOVEMENT_MARGIN;
+            if (isInterior(location.getX() - (regionX << REGION_SHIFT), reach) && isInterior(location.getZ() - (regionZ << REGION_SHIFT), reach)) {
+                long key = ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
+                regions.computeIfAbsent(key, x -> new ArrayList<>()).add(stack);
+            } else {
+                boundary.add(stack);
+            }
+        }
+
+        Consumer<T> guardedAction = stack -> {
+            try {
+                action.accept(stack);
+            } catch (RuntimeException e) {
+                RoseStacker.getInstance().getLogger().log(Level.SEVERE, "An error occurred while stacking " + stack, e);
+            }
+        };
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(regions.size());
+        for (List<T> region : regions.values())
+            tasks.add(pool.submit(() -> region.forEach(guardedAction)));
+        for (ForkJoinTask<?> task : tasks)
+            task.join();
+
+        boundary.forEach(guardedAction);
+    }
+
+    private static boolean isInterior(double offset, double reach) {
+        return offset - reach >= 0 && offset + reach < REGION_SIZE;
+    }
+
+}
@@ -0,0 +1,267 @@
+package dev.rosewood.rosestacker.stack;
+
+import dev.rosewood.rosegarden.RosePlugin;
+import dev.rosewood.rosegarden.scheduler.task.ScheduledTask;
+import dev.rosewood.rosestacker.manager.ExecutorManager.Pool;
+import dev.rosewood.rosestacker.utils.ThreadUtils;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.bukkit.World;
+
+/**
+ * Owns the recurring work of every world from a single timer instead of one timer per task per world.
+ * Jobs with the same frequency are staggered across ticks so they don't all fire at once. Each tick hands out a shared
+ * budget of worker time: due jobs are dispatched starting with the world, and then the job, that has recently used the
+ * least time, until the budget runs out. Each dispatch reserves what the job is expected to take up front and settles
+ * the difference once it finishes, so a single tick can't hand out far more than its budget. Jobs that don't get
+ * dispatched stay due and fall behind, which is reported per world by {@link #getTicksBehind(World)}.
+ * A job may have a preparation step that runs on the main thread right before each of its runs is handed to its pool.
+ */
+public class StackingScheduler {
+
+    private static final long START_DELAY = 5;
+    private static final int MAX_BURST_TICKS = 5; // Unused budget carries over, and overruns are owed, for at most this many ticks
+    private static final long SHARE_HALF_LIFE = 20; // Recent usage counts half as much after this many ticks
+
+    private final RosePlugin rosePlugin;
+    private final long budgetNanos;
+    private final List<Job> jobs;
+    private final Map<World, AtomicLong> worldUsage;
+    private final AtomicLong availableNanos;
+    private ScheduledTask task;
+    private volatile long currentTick;
+    private int registrations;
+
+    /**
+     * @param rosePlugin The plugin instance
+     * @param budgetMillis The worker time in milliseconds shared by all jobs each tick, or a value below 1 for no limit
+     */
+    public StackingScheduler(RosePlugin rosePlugin, long budgetMillis) {
+        this.rosePlugin = rosePlugin;
+        this.budgetNanos = budgetMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(budgetMillis) : -1;
+        this.jobs = new CopyOnWriteArrayList<>();
+        this.worldUsage = new ConcurrentHashMap<>();
+        this.availableNanos = new AtomicLong();
+    }
+
+    public void start() {
+        this.task = this.rosePlugin.getScheduler().runTaskTimerAsync(this::tick, 1L, 1L);
+    }
+
+    public void stop() {
+        if (this.task != null) {
+            this.task.cancel();
+            this.task = null;
+        }
+
+        this.jobs.clear();
+        this.worldUsage.clear();
+    }
+
+    /**
+     * Registers a recurring job for a world
+     *
+     * @param world The world the job works on
+     * @param frequency How many ticks apart the job should run
+     * @param pool The pool the job should run in
+     * @param runnable The work to run
+     * @return the registered job
+     */
+    public Job register(World world, long frequency, Pool pool, Runnable runnable) {
+        return this.register(world, frequency, pool, null, runnable);
+    }
+
+    /**
+     * Registers a recurring job for a world that prepares each of its runs on the main thread
+     *
+     * @param world The world the job works on
+     * @param frequency How many ticks apart the job should run
+     * @param pool The pool the job should run in
+     * @param preparation The work to run on the main thread right before each run is handed to the pool, or null for none
+     * @param runnable The work to run
+     * @return the registered job
+     */
+    public synchronized Job register(World world, long frequency, Pool pool, Runnable preparation, Runnable runnable) {
+        long period = Math.max(1, frequency);
+        long offset = this.registrations++ % period; // Stagger jobs so they don't all land on the same tick
+        Job job = new Job(world, period, pool, preparation, runnable, this.currentTick + START_DELAY + offset);
+        this.worldUsage.computeIfAbsent(world, x -> new AtomicLong());
+        this.jobs.add(job);
+        return job;
+    }
+
+    /**
+     * Gets how many ticks the work of a world is behind schedule, measured by the job that is furthest behind
+     *
+     * @param world The world
+     * @return the number of ticks behind schedule, 0 if the world is up to date
+     */
+    public long getTicksBehind(World world) {
+        long tick = this.currentTick;
+        long behind = 0;
+        for (Job job : this.jobs)
+            if (job.world == world)
+                behind = Math.max(behind, job.getTicksBehind(tick));
+        return behind;
+    }
+
+    private void tick() {
+        long tick = ++this.currentTick;
+        if (this.budgetNanos > 0)
+            this.availableNanos.getAndUpdate(x -> Math.min(x + this.budgetNanos, this.budgetNanos * MAX_BURST_TICKS));
+
+        if (tick % SHARE_HALF_LIFE == 0) {
+            this.worldUsage.values().forEach(x -> x.getAndUpdate(y -> y / 2));
+            this.jobs.forEach(x -> x.usage.getAndUpdate(y -> y / 2));
+        }
+
+        List<Job> due = new ArrayList<>();
+        for (Job job : this.jobs)
+            if (!job.running && job.dueTick <= tick)
+                due.add(job);
+
+        if (due.isEmpty())
+            return;
+
+        // Fair share, the world and then the job that used the least time recently go first
+        due.sort(Comparator.comparingLong((Job x) -> this.getWorldUsage(x.world)).thenComparingLong(x -> x.usage.get()));
+        for (Job job : due) {
+            if (this.budgetNanos > 0 && this.availableNanos.get() <= 0)
+                break;
+
+            long reserved = this.budgetNanos > 0 ? this.getReservation(job) : 0;
+            long dueTick = job.dueTick;
+            this.availableNanos.addAndGet(-reserved);
+            job.running = true;
+            job.lastTicksBehind = tick - dueTick;
+            job.dueTick = tick + job.period;
+            try {
+                if (job.preparation != null) {
+                    ThreadUtils.runSync(() -> this.prepare(job, reserved));
+                } else {
+                    ThreadUtils.runAsync(job.pool, () -> this.run(job, reserved));
+                }
+            } catch (RuntimeException e) {
+                // The pool rejected the job, leave it due so it is tried again next tick
+                this.availableNanos.addAndGet(reserved);
+                job.dueTick = dueTick;
+                job.running = false;
+            }
+        }
+    }
+
+    /**
+     * Runs the preparation of a job on the main thread and then hands the job to its pool
+     *
+     * @param job The job
+     * @param reserved The worker time that was reserved for the job when it was dispatched
+     */
+    private void prepare(Job job, long reserved) {
+        boolean handedOff = false;
+        try {
+            if (!job.cancelled)
+                job.preparation.run();
+            ThreadUtils.runAsync(job.pool, () -> this.run(job, reserved));
+            handedOff = true;
+        } finally {
+            if (!handedOff) {
+                // The job won't run this time, give back what was reserved for it
+                this.availableNanos.addAndGet(reserved);
+                job.running = false;
+            }
+        }
+    }
+
+    /**
+     * Runs a job and charges the time it took
+     *
+     * @param job The job
+     * @param reserved The worker time that was reserved for the job when it was dispatched
+     */
+    private void run(Job job, long reserved) {
+        long start = System.nanoTime();
+        try {
+            if (!job.cancelled)
+                job.runnable.run();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            job.usage.addAndGet(elapsed);
+            job.estimatedNanos = job.measured ? (job.estimatedNanos * 3 + elapsed) / 4 : elapsed;
+            job.measured = true;
+            AtomicLong worldUsage = this.worldUsage.get(job.world);
+            if (worldUsage != null)
+                worldUsage.addAndGet(elapsed);
+            if (this.budgetNanos > 0) {
+                long minimum = -this.budgetNanos * MAX_BURST_TICKS;
+                this.availableNanos.getAndUpdate(x -> Math.max(x + reserved - elapsed, minimum));
+            }
+            job.running = false;
+        }
+    }
+
+    /**
+     * Gets the worker time to reserve for a run of a job. Until a job has been measured once it gets an even share of
+     * the budget, so a batch of new jobs can't all be dispatched in the same tick for free.
+     *
+     * @param job The job
+     * @return the worker time to reserve in nanoseconds
+     */
+    private long getReservation(Job job) {
+        if (job.measured)
+            return job.estimatedNanos;
+        return this.budgetNanos / Math.max(1, this.jobs.size());
+    }
+
+    private long getWorldUsage(World world) {
+        AtomicLong usage = this.worldUsage.get(world);
+        return usage == null ? 0 : usage.get();
+    }
+
+    public class Job {
+
+        private final World world;
+        private final long period;
+        private final Pool pool;
+        private final Runnable preparation;
+        private final Runnable runnable;
+        private final AtomicLong usage;
+        private volatile long dueTick;
+        private volatile long estimatedNanos;
+        private volatile long lastTicksBehind;
+        private volatile boolean running, cancelled, measured;
+
+        private Job(World world, long period, Pool pool, Runnable preparation, Runnable runnable, long dueTick) {
+            this.world = world;
+            this.period = period;
+            this.pool = pool;
+            this.preparation = preparation;
+            this.runnable = runnable;
+            this.usage = new AtomicLong();
+            this.dueTick = dueTick;
+        }
+
+        /**
+         * Stops the job from running again, a run that is already in progress will finish
+         */
+        public void cancel() {
+            this.cancelled = true;
+            StackingScheduler.this.jobs.remove(this);
+            if (StackingScheduler.this.jobs.stream().noneMatch(x -> x.world == this.world))
+                StackingScheduler.this.worldUsage.remove(this.world);
+        }
+
+        private long getTicksBehind(long tick) {
+            if (this.running)
+                return this.lastTicksBehind;
+            return Math.max(0, tick - this.dueTick);
+        }
+
+    }
+
+}
@@ -1,12 +1,18 @@
 package dev.rosewood.rosestacker.stack;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import dev.rosewood.guiframework.framework.util.GuiUtil;
 import dev.rosewood.rosegarden.RosePlugin;
 import dev.rosewood.rosegarden.compatibility.CompatibilityAdapter;
 import dev.rosewood.rosegarden.scheduler.task.ScheduledTask;
+import dev.rosewood.rosestacker.cache.EntitySection;
 import dev.rosewood.rosestacker.config.SettingKey;
+import dev.rosewood.rosestacker.engine.MergeDecision;
+import dev.rosewood.rosestacker.engine.SpawnDecision;
+import dev.rosewood.rosestacker.engine.StackClusters;
+import dev.rosewood.rosestacker.engine.StackEngine;
+import dev.rosewood.rosestacker.engine.StackView;
+import dev.rosewood.rosestacker.engine.TypeRules;
+import dev.rosewood.rosestacker.engine.UnstackDecision;
 import dev.rosewood.rosestacker.event.EntityStackClearEvent;
 import dev.rosewood.rosestacker.event.EntityStackEvent;
 import dev.rosewood.rosestacker.event.EntityUnstackEvent;
@@ -16,6 +22,7 @@ import dev.rosewood.rosestacker.event.PreDropStackedItemsEvent;
 import dev.rosewood.rosestacker.hook.NPCsHook;
 import dev.rosewood.rosestacker.hook.WorldGuardHook;
 import dev.rosewood.rosestacker.manager.EntityCacheManager;
+import dev.rosewood.rosestacker.manager.ExecutorManager.Pool;
 import dev.rosewood.rosestacker.manager.HologramManager;
 import dev.rosewood.rosestacker.manager.StackManager;
 import dev.rosewood.rosestacker.manager.StackSettingManager;
@@ -32,21 +39,27 @@ import dev.rosewood.rosestacker.utils.PersistentDataUtils;
 import dev.rosewood.rosestacker.utils.StackerUtils;
 import dev.rosewood.rosestacker.utils.ThreadUtils;
 import dev.rosewood.rosestacker.utils.VersionUtils;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
-import java.util.function.Predicate;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
@@ -62,16 +75,14 @@ import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Item;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
 import org.bukkit.event.entity.CreatureSpawnEvent.SpawnReason;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.metadata.FixedMetadataValue;
 import org.bukkit.util.Vector;
 
 public class StackingThread implements StackingLogic, AutoCloseable {
 
-    private final static String NEW_METADATA = "RS_new";
-
-    private final static Cache<UUID, Boolean> REMOVED_ENTITIES = CacheBuilder.newBuilder().expireAfterWrite(5, TimeUnit.SECONDS).build();
+    private static final EntityType[] ENTITY_TYPES = EntityType.values();
 
     private final RosePlugin rosePlugin;
     private final StackManager stackManager;
@@ -79,13 +90,35 @@ public class StackingThread implements StackingLogic, AutoCloseable {
     private final HologramManager hologramManager;
     private final World targetWorld;
 
-    private final ScheduledTask entityStackTask, itemStackTask, nametagTask, hologramTask;
-    private ScheduledTask entityUnstackTask, entityCleanupTask;
+    private final StackingScheduler.Job entityStackTask, itemStackTask, nametagTask, hologramTask;
+    private StackingScheduler.Job entityUnstackTask, proximityTierTask;
+    private ScheduledTask entityCleanupTask;
 
     private final Map<UUID, StackedEntity> stackedEntities;
     private final Map<UUID, StackedItem> stackedItems;
     private final Map<Chunk, StackChunkData> stackChunkData;
 
+    private final StackMailbox<StackedEntity> dirtyEntities;
+    private final StackMailbox<StackedItem> pendingItems;
+    private final Set<StackedItem> deferredItemSeeds;
+    private final StackMailbox<StackedEntity> unstackCandidates;
+    private final StackMailbox<StackedEntity> spawnBatch;
+    private final AtomicBoolean spawnBatchScheduled;
+    private final long unstackSweepInterval;
+    private long unstackRuns;
+    private final Set<UUID> pendingRemovals;
+    private final Deque<Chunk> rescanChunks;
+    private long ticksSinceRescan;
+    private final StackingPass entityStackPass, itemStackPass;
+    private final long entitySweepInterval;
+    private volatile long entityStackRuns;
+    private volatile boolean entitySweepInProgress;
+    private ProximityTiers proximityTiers;
+    private volatile EntitySnapshot nextEntitySnapshot;
+    private final TypeRules[] typeRules;
+    private final StackEngine stackEngine;
+    private final Object stackEventLock;
+
     private final boolean dynamicEntityTags, dynamicItemTags;
     private final double entityDynamicViewRangeSqrd, itemDynamicViewRangeSqrd;
     private final boolean entityDynamicWallDetection, itemDynamicWallDetection;
@@ -97,23 +130,48 @@ public class StackingThread implements StackingLogic, AutoCloseable {
         this.hologramManager = this.rosePlugin.getManager(HologramManager.class);
         this.targetWorld = targetWorld;
 
-        this.entityStackTask = rosePlugin.getScheduler().runTaskTimerAsync(this::stackEntities, 5L, SettingKey.STACK_FREQUENCY.get());
-        this.itemStackTask = rosePlugin.getScheduler().runTaskTimerAsync(this::stackItems, 5L, SettingKey.ITEM_STACK_FREQUENCY.get());
-        this.nametagTask = rosePlugin.getScheduler().runTaskTimerAsync(this::processNametags, 5L, SettingKey.NAMETAG_UPDATE_FREQUENCY.get());
-        this.hologramTask = rosePlugin.getScheduler().runTaskTimerAsync(this::updateHolograms, 5L, SettingKey.HOLOGRAM_UPDATE_FREQUENCY.get());
+        StackingScheduler scheduler = stackManager.getStackingScheduler();
+        this.entityStackTask = scheduler.register(targetWorld, SettingKey.STACK_FREQUENCY.get(), Pool.STACKING, SettingKey.STACK_ENTITY_SNAPSHOTS.get() ? this::captureEntitySnapshot : null, this::stackEntities);
+        this.itemStackTask = scheduler.register(targetWorld, SettingKey.ITEM_STACK_FREQUENCY.get(), Pool.STACKING, this::stackItems);
+        this.nametagTask = scheduler.register(targetWorld, SettingKey.NAMETAG_UPDATE_FREQUENCY.get(), Pool.NAMETAGS, this::processNametags);
+        this.hologramTask = scheduler.register(targetWorld, SettingKey.HOLOGRAM_UPDATE_FREQUENCY.get(), Pool.NAMETAGS, this::updateHolograms);
 
         long unstackFrequency = SettingKey.UNSTACK_FREQUENCY.get();
         if (unstackFrequency > 0)
-            this.entityUnstackTask = rosePlugin.getScheduler().runTaskTimerAsync(this::unstackEntities, 5L, unstackFrequency);
+            this.entityUnstackTask = scheduler.register(targetWorld, unstackFrequency, Pool.STACKING, this::unstackEntities);
 
         long cleanupFrequency = SettingKey.ENTITY_RESCAN_FREQUENCY.get();
         if (cleanupFrequency > 0)
-            this.entityCleanupTask = rosePlugin.getScheduler().runTaskTimer(this::cleanupOrphanedEntities, 5L, cleanupFrequency);
+            this.entityCleanupTask = rosePlugin.getScheduler().runTaskTimer(() -> this.cleanupOrphanedEntities(cleanupFrequency), 5L, 1L);
 
         this.stackedEntities = new ConcurrentHashMap<>();
         this.stackedItems = new ConcurrentHashMap<>();
         this.stackChunkData = new ConcurrentHashMap<>();
 
+        this.dirtyEntities = new StackMailbox<>();
+        this.pendingItems = new StackMailbox<>();
+        this.deferredItemSeeds = ConcurrentHashMap.newKeySet();
+        this.unstackCandidates = new StackMailbox<>();
+        this.spawnBatch = new StackMailbox<>();
+        this.spawnBatchScheduled = new AtomicBoolean();
+        long unstackSweepFrequency = SettingKey.UNSTACK_SWEEP_FREQUENCY.get();
+        this.unstackSweepInterval = unstackFrequency > 0 ? Math.max(1, unstackSweepFrequency / unstackFrequency) : 1;
+        this.entitySweepInterval = Math.max(1, SettingKey.STACK_ENTITY_ACTIVITY_SWEEP_FREQUENCY.get() / Math.max(1, SettingKey.STACK_FREQUENCY.get()));
+        this.pendingRemovals = ConcurrentHashMap.newKeySet();
+        this.rescanChunks = new ArrayDeque<>();
+        this.typeRules = this.createTypeRules();
+        this.stackEngine = new StackEngine(type -> this.typeRules[type]);
+        this.stackEventLock = new Object();
+        this.entityStackPass = new StackingPass(SettingKey.STACK_PASS_TIME_BUDGET.get());
+        this.itemStackPass = new StackingPass(SettingKey.STACK_PASS_TIME_BUDGET.get());
+
+        if (SettingKey.STACK_PROXIMITY_TIERS_ENABLED.get()) {
+            this.proximityTiers = new ProximityTiers(SettingKey.STACK_PROXIMITY_TIERS_NEAR_DISTANCE.get(), SettingKey.STACK_PROXIMITY_TIERS_FAR_DISTANCE.get(),
+                    SettingKey.STACK_PROXIMITY_TIERS_MID_INTERVAL.get(), SettingKey.STACK_PROXIMITY_TIERS_FAR_INTERVAL.get());
+            this.proximityTiers.refresh(this.targetWorld);
+            this.proximityTierTask = scheduler.register(targetWorld, SettingKey.STACK_PROXIMITY_TIERS_REFRESH_FREQUENCY.get(), Pool.STACKING, () -> this.proximityTiers.refresh(this.targetWorld));
+        }
+
         this.dynamicEntityTags = SettingKey.ENTITY_DISPLAY_TAGS.get() && SettingKey.ENTITY_DYNAMIC_TAG_VIEW_RANGE_ENABLED.get();
         this.dynamicItemTags = SettingKey.ITEM_DISPLAY_TAGS.get() && SettingKey.ITEM_DYNAMIC_TAG_VIEW_RANGE_ENABLED.get();
 
@@ -139,19 +197,204 @@ public class StackingThread implements StackingLogic, AutoCloseable {
     }
 
     private void stackEntities() {
+        // Each run reads the snapshot taken right before it was dispatched, and only for as long as it runs
+        EntitySnapshot snapshot = this.nextEntitySnapshot;
+        this.nextEntitySnapshot = null;
+
         boolean entityStackingEnabled = this.stackManager.isEntityStackingEnabled();
         if (!entityStackingEnabled || this.stackManager.isEntityStackingTemporarilyDisabled())
             return;
 
-        for (StackedEntity stackedEntity : this.stackedEntities.values()) {
-            LivingEntity livingEntity = stackedEntity.getEntity();
-            if (this.isRemoved(livingEntity)) {
-                this.removeEntityStack(stackedEntity);
-                continue;
+        if (!this.entityStackPass.beginRun())
+            return;
+
+        if (snapshot != null)
+            snapshot.attach();
+
+        Runnable releaseSections = null;
+        try {
+            // Without movement events we can't tell which stacks changed, queue all of them once per pass. With them, still
+            // queue all of them every so often to catch changes that don't move the entity, such as babies growing up
+            boolean tracked = this.stackManager.isEntityActivityTracked();
+            boolean sweepDue = this.isEntitySweepDue();
+            this.entityStackRuns++;
+            if (sweepDue) {
+                this.dirtyEntities.submitAll(this.stackedEntities.values());
+                this.entitySweepInProgress = true;
             }
 
-            this.tryStackEntity(stackedEntity);
+            // Only process stacks that are new, have moved, changed size, or were removed since the last pass
+            List<StackedEntity> batch = this.dirtyEntities.drain();
+            MergeYields mergeYields = this.stackManager.getMergeYields();
+            batch = this.filterDue(batch, this.entityStackPass, StackedEntity::getX, StackedEntity::getZ, stackedEntity -> {
+                LivingEntity livingEntity = stackedEntity.getEntity();
+                return livingEntity == null ? 1 : mergeYields.getInterval(livingEntity.getType());
+            }, stackedEntity -> {
+                LivingEntity livingEntity = stackedEntity.getEntity();
+                return livingEntity == null ? 0 : livingEntity.getEntityId();
+            }, tracked ? this.dirtyEntities::submit : x -> { });
+
+            releaseSections = this.prefetchEntitySections(batch);
+            if (releaseSections == null) {
+                this.dirtyEntities.submitAll(batch); // The server didn't answer in time, try again next run
+                return;
+            }
+
+            Consumer<StackedEntity> action = stackedEntity -> {
+                if (this.entityStackPass.isOutOfTime()) {
+                    this.dirtyEntities.submit(stackedEntity); // Leave it queued for the next run
+                } else {
+                    this.processEntity(stackedEntity, !tracked);
+                }
+            };
+
+            ForkJoinPool stackingPool = this.stackManager.getStackingPool();
+            if (SettingKey.STACK_CLUSTER_MERGING.get()) {
+                this.stackEntityClusters(batch, !tracked);
+            } else if (stackingPool != null) {
+                StackingRegions.process(stackingPool, batch, StackedEntity::getLocation, this::getMergeReach, action);
+            } else {
+                batch.forEach(action);
+            }
+
+            if (!this.entityStackPass.isOutOfTime()) {
+                this.entitySweepInProgress = false;
+                this.entityStackPass.complete();
+            }
+        } finally {
+            if (releaseSections != null)
+                releaseSections.run();
+            if (snapshot != null)
+                snapshot.detach();
+            this.entityStackPass.endRun();
+        }
+    }
+
+    /**
+     * @return true if the next entity stacking run should queue every stack, see {@link #stackEntities()}
+     */
+    private boolean isEntitySweepDue() {
+        if (this.entitySweepInProgress)
+            return false;
+        return !this.stackManager.isEntityActivityTracked() || this.entityStackRuns % this.entitySweepInterval == 0;
+    }
+
+    /**
+     * Copies the state that stacking reads from every tracked entity right before an entity stacking run is dispatched,
+     * so the run doesn't need to read the entities from another thread. Nothing is copied if the run has nothing to do.
+     */
+    private void captureEntitySnapshot() {
+        this.nextEntitySnapshot = null;
+        if (!this.stackManager.isEntityStackingEnabled() || this.stackManager.isEntityStackingTemporarilyDisabled())
+            return;
+
+        if (this.dirtyEntities.isEmpty() && !this.isEntitySweepDue())
+            return;
+
+        this.nextEntitySnapshot = EntitySnapshot.capture(this.stackedEntities.values());
+    }
+
+    private void processEntity(StackedEntity stackedEntity, boolean requireMovement) {
+        LivingEntity livingEntity = stackedEntity.getEntity();
+        if (livingEntity == null || this.stackedEntities.get(livingEntity.getUniqueId()) != stackedEntity)
+            return; // Already merged into another stack or no longer tracked
+
+        if (this.isRemoved(stackedEntity)) {
+            this.removeEntityStack(stackedEntity);
+            return;
+        }
+
+        if (this.isUnconfirmed(stackedEntity))
+            return; // The spawn batch stacks it once its spawn goes through
+
+        this.tryStackEntity(stackedEntity, requireMovement);
+    }
+
+    /**
+     * Removes the stacks that are not due to be stacked during the current pass, either because they are too far from
+     * players or because their type rarely merges.
+     * A stack is stacked every so many passes, the longer of its proximity tier interval and its type interval. Each
+     * stack is offset by its phase so stacks sharing an interval are spread across the passes instead of all coming due
+     * on the same one.
+     *
+     * @param batch The stacks to filter
+     * @param pass The pass the stacks are being stacked in
+     * @param xFunction Gets the current x coordinate of a stack, NaN if it has none
+     * @param zFunction Gets the current z coordinate of a stack, NaN if it has none
+     * @param typeInterval Gets how many passes apart the type of a stack is stacked
+     * @param phaseFunction Gets a number that stays the same for a stack, such as its entity id
+     * @param deferred Called with each stack that was removed
+     * @param <T> The type of stack
+     * @return the stacks that are due to be stacked
+     */
+    private <T> List<T> filterDue(List<T> batch, StackingPass pass, ToDoubleFunction<T> xFunction, ToDoubleFunction<T> zFunction, ToIntFunction<T> typeInterval, ToIntFunction<T> phaseFunction, Consumer<T> deferred) {
+        ProximityTiers proximityTiers = this.proximityTiers;
+        long passNumber = pass.getPassNumber();
+        List<T> due = new ArrayList<>(batch.size());
+        for (T stack : batch) {
+            int interval = typeInterval.applyAsInt(stack);
+            if (proximityTiers != null)
+                interval = Math.max(interval, proximityTiers.getInterval(xFunction.applyAsDouble(stack), zFunction.applyAsDouble(stack)));
+
+            if (interval <= 1 || Math.floorMod(passNumber + phaseFunction.applyAsInt(stack), interval) == 0) {
+                due.add(stack);
+            } else {
+                deferred.accept(stack);
+            }
         }
+        return due;
+    }
+
+    /**
+     * Looks up every chunk section a batch of StackedEntities could merge within at once when entities are queried
+     * from the server, so the batch doesn't wait on the main thread once per stack
+     *
+     * @param batch the StackedEntities about to be stacked
+     * @return a task that drops the looked up sections, or null if the server didn't answer in time
+     */
+    private Runnable prefetchEntitySections(List<StackedEntity> batch) {
+        if (!this.entityCacheManager.isQueryingNatively())
+            return () -> { };
+
+        Map<Double, List<StackedEntity>> stacksByRadius = new HashMap<>();
+        for (StackedEntity stackedEntity : batch) {
+            EntityStackSettings stackSettings = stackedEntity.getStackSettings();
+            if (stackedEntity.getEntity() != null && stackSettings != null)
+                stacksByRadius.computeIfAbsent(stackSettings.getMergeRadius(), x -> new ArrayList<>()).add(stackedEntity);
+        }
+
+        // Pad the radius a little, the searches use where the entities are when they get to them
+        boolean entireChunk = SettingKey.ENTITY_MERGE_ENTIRE_CHUNK.get();
+        Set<Long> sectionKeys = new HashSet<>();
+        stacksByRadius.forEach((mergeRadius, stacks) -> sectionKeys.addAll(this.getSectionKeys(stacks, StackedEntity::getX, StackedEntity::getY, StackedEntity::getZ, mergeRadius + 1, entireChunk)));
+        return this.entityCacheManager.prefetchSections(this.targetWorld, sectionKeys);
+    }
+
+    /**
+     * Looks up every chunk section a batch of StackedItems could merge within at once when entities are queried from
+     * the server, so the batch doesn't wait on the main thread once per stack
+     *
+     * @param batch the StackedItems about to be stacked
+     * @return a task that drops the looked up sections, or null if the server didn't answer in time
+     */
+    private Runnable prefetchItemSections(List<StackedItem> batch) {
+        if (!this.entityCacheManager.isQueryingNatively())
+            return () -> { };
+
+        List<Location> locations = new ArrayList<>(batch.size());
+        for (StackedItem stackedItem : batch)
+            if (stackedItem.getItem() != null)
+                locations.add(stackedItem.getLocation());
+
+        Set<Long> sectionKeys = this.getSectionKeys(locations, Location::getX, Location::getY, Location::getZ, SettingKey.ITEM_MERGE_RADIUS.get() + 1, false);
+        return this.entityCacheManager.prefetchSections(this.targetWorld, sectionKeys);
+    }
+
+    private double getMergeReach(StackedEntity stackedEntity) {
+        EntityStackSettings stackSettings = stackedEntity.getStackSettings();
+        if (stackSettings == null || SettingKey.ENTITY_MERGE_ENTIRE_CHUNK.get())
+            return 0; // Regions are chunk aligned, merging within a chunk never crosses into another region
+        return stackSettings.getMergeRadius();
     }
 
     private void unstackEntities() {
@@ -159,8 +402,24 @@ public class StackingThread implements StackingLogic, AutoCloseable {
         if (!entityStackingEnabled || this.stackManager.isEntityUnstackingTemporarilyDisabled())
             return;
 
-        for (StackedEntity stackedEntity : this.stackedEntities.values())
-            this.tryUnstackEntity(stackedEntity);
+        // Stacks only become incompatible after specific changes, the listeners queue those. Every so often check
+        // all of them anyway to catch changes we weren't told about
+        List<StackedEntity> candidates = this.unstackCandidates.drain();
+        if (this.unstackRuns++ % this.unstackSweepInterval == 0) {
+            this.stackedEntities.values().forEach(this::tryUnstackEntity);
+        } else {
+            candidates.forEach(this::tryUnstackEntity);
+        }
+    }
+
+    /**
+     * Queues a StackedEntity to be checked for entities that are no longer compatible with it on the next unstack run
+     *
+     * @param stackedEntity the StackedEntity that was renamed, leashed, bred, or otherwise changed
+     */
+    public void requestUnstackCheck(StackedEntity stackedEntity) {
+        if (this.entityUnstackTask != null)
+            this.unstackCandidates.submit(stackedEntity);
     }
 
     @Override
@@ -169,12 +428,13 @@ public class StackingThread implements StackingLogic, AutoCloseable {
         if (entity == null || stackedEntity.getStackSize() <= 1 || !entity.isValid())
             return;
 
-        if (!stackedEntity.shouldStayStacked()) {
+        UnstackDecision decision = this.stackEngine.planUnstack(this.toView(stackedEntity, 0), view -> stackedEntity.shouldStayStacked());
+        if (decision == UnstackDecision.SPLIT) {
             ThreadUtils.runSync(() -> {
                 if (stackedEntity.getStackSize() > 1)
                     this.splitEntityStack(stackedEntity);
             });
-        } else if (SettingKey.ENTITY_MIN_SPLIT_IF_LOWER.get() && stackedEntity.getStackSize() < stackedEntity.getStackSettings().getMinStackSize()) {
+        } else if (decision == UnstackDecision.DISSOLVE) {
             NMSHandler nmsHandler = NMSAdapter.getHandler();
             StackedEntityDataStorage nbt = stackedEntity.getDataStorage();
             stackedEntity.setDataStorage(nmsHandler.createEntityDataStorage(entity, this.stackManager.getEntityDataStorageType(entity.getType())));
@@ -185,17 +445,64 @@ public class StackingThread implements StackingLogic, AutoCloseable {
         }
     }
 
-    private void cleanupOrphanedEntities() {
-        for (Entity entity : this.targetWorld.getEntities()) {
-            if (this.isRemoved(entity))
+    /**
+     * Scans a few loaded chunks each tick for entities that were missed by the plugin, must be run on the main thread.
+     * A new scan starts every cleanupFrequency ticks once the previous one has gone through every chunk. Entities are
+     * collected here but checked off the main thread, only the orphans found get sent back to have stacks created.
+     *
+     * @param cleanupFrequency How many ticks apart scans should start
+     */
+    private void cleanupOrphanedEntities(long cleanupFrequency) {
+        if (this.rescanChunks.isEmpty()) {
+            if (++this.ticksSinceRescan < cleanupFrequency)
+                return;
+
+            this.ticksSinceRescan = 0;
+            Collections.addAll(this.rescanChunks, this.targetWorld.getLoadedChunks());
+        }
+
+        List<Entity> entities = new ArrayList<>();
+        int chunksPerTick = SettingKey.ENTITY_RESCAN_CHUNKS_PER_TICK.get();
+        for (int i = 0; i < chunksPerTick && !this.rescanChunks.isEmpty(); i++) {
+            Chunk chunk = this.rescanChunks.poll();
+            if (chunk.isLoaded())
+                Collections.addAll(entities, chunk.getEntities());
+        }
+
+        if (entities.isEmpty())
+            return;
+
+        ThreadUtils.runAsync(Pool.STACKING, () -> {
+            List<Entity> orphans = new ArrayList<>();
+            for (Entity entity : entities) {
+                if (!entity.isValid() || this.pendingRemovals.contains(entity.getUniqueId()))
+                    continue;
+
+                if (entity instanceof LivingEntity livingEntity && entity.getType() != EntityType.ARMOR_STAND && entity.getType() != EntityType.PLAYER) {
+                    if (!this.isEntityStacked(livingEntity) && !this.stackManager.isAreaDisabled(entity.getLocation()))
+                        orphans.add(entity);
+                } else if (entity.getType() == VersionUtils.ITEM) {
+                    if (!this.isItemStacked((Item) entity) && !this.stackManager.isAreaDisabled(entity.getLocation()))
+                        orphans.add(entity);
+                }
+            }
+
+            if (!orphans.isEmpty())
+                ThreadUtils.runSync(() -> this.createOrphanStacks(orphans));
+        });
+    }
+
+    private void createOrphanStacks(List<Entity> orphans) {
+        for (Entity entity : orphans) {
+            // Things may have changed while we were checking
+            if (!entity.isValid() || this.pendingRemovals.contains(entity.getUniqueId()))
                 continue;
 
-            if (entity instanceof LivingEntity livingEntity && entity.getType() != EntityType.ARMOR_STAND && entity.getType() != EntityType.PLAYER && !this.isEntityStacked(livingEntity)) {
-                if (!this.stackManager.isAreaDisabled(entity.getLocation()))
+            if (entity instanceof LivingEntity livingEntity) {
+                if (!this.isEntityStacked(livingEntity))
                     this.createEntityStack(livingEntity, false);
-            } else if (entity.getType() == VersionUtils.ITEM) {
-                Item item = (Item) entity;
-                if (!this.isItemStacked(item) && !this.stackManager.isAreaDisabled(entity.getLocation()))
+            } else if (entity instanceof Item item) {
+                if (!this.isItemStacked(item))
                     this.createItemStack(item, false);
             }
         }
@@ -206,21 +513,416 @@ public class StackingThread implements StackingLogic, AutoCloseable {
         if (!itemStackingEnabled)
             return;
 
-        boolean updateItemNametags = SettingKey.ITEM_DISPLAY_DESPAWN_TIMER_PLACEHOLDER.get();
+        if (!this.itemStackPass.beginRun())
+            return;
 
-        // Auto stack items
-        for (StackedItem stackedItem : this.stackedItems.values()) {
-            Item item = stackedItem.getItem();
-            if (item == null || this.isRemoved(item)) {
+        Runnable releaseSections = null;
+        try {
+            // Start a new pass once the previous one got through every item
+            if (this.pendingItems.isEmpty())
+                this.pendingItems.submitAll(this.stackedItems.values());
+
+            boolean updateItemNametags = SettingKey.ITEM_DISPLAY_DESPAWN_TIMER_PLACEHOLDER.get();
+            List<StackedItem> batch = this.pendingItems.drain();
+            batch = this.filterDue(batch, this.itemStackPass, x -> x.getItem() == null ? Double.NaN : x.getLocation().getX(), x -> x.getItem() == null ? Double.NaN : x.getLocation().getZ(), x -> 1, x -> x.getItem() == null ? 0 : x.getItem().getEntityId(), x -> { });
+
+            releaseSections = this.prefetchItemSections(batch);
+            if (releaseSections == null) {
+                this.pendingItems.submitAll(batch); // The server didn't answer in time, try again next run
+                return;
+            }
+
+            Consumer<StackedItem> action = stackedItem -> {
+                if (this.itemStackPass.isOutOfTime()) {
+                    this.pendingItems.submit(stackedItem); // Leave it queued for the next run
+                } else {
+                    this.processItem(stackedItem, updateItemNametags);
+                }
+            };
+
+            ForkJoinPool stackingPool = this.stackManager.getStackingPool();
+            if (SettingKey.STACK_CLUSTER_MERGING.get()) {
+                this.stackItemClusters(batch, updateItemNametags);
+            } else if (stackingPool != null) {
+                double mergeRadius = SettingKey.ITEM_MERGE_RADIUS.get();
+                StackingRegions.process(stackingPool, batch, x -> x.getItem() == null ? null : x.getLocation(), x -> mergeRadius, action);
+            } else {
+                batch.forEach(action);
+            }
+
+            if (!this.itemStackPass.isOutOfTime())
+                this.itemStackPass.complete();
+        } finally {
+            if (releaseSections != null)
+                releaseSections.run();
+            this.itemStackPass.endRun();
+        }
+    }
+
+    private void processItem(StackedItem stackedItem, boolean updateItemNametags) {
+        if (this.isRemoved(stackedItem)) {
+            this.removeItemStack(stackedItem);
+            return;
+        }
+
+        Item item = stackedItem.getItem();
+        if (this.stackedItems.get(item.getUniqueId()) != stackedItem)
+            return; // Already merged into another stack
+
+        if (this.isUnconfirmed(stackedItem))
+            return; // Still being stacked as it is created
+
+        if (updateItemNametags)
+            stackedItem.updateDisplay();
+
+        this.tryStackItem(stackedItem);
+    }
+
+    /**
+     * Stacks a batch of entities by building clusters of every compatible stack around them in one sweep per entity
+     * type, rather than searching around each stack separately
+     *
+     * @param batch the StackedEntities to stack
+     * @param requireMovement true to skip StackedEntities that haven't moved since they were last checked
+     */
+    private void stackEntityClusters(List<StackedEntity> batch, boolean requireMovement) {
+        Map<EntityType, List<StackedEntity>> seedsByType = new HashMap<>();
+        for (StackedEntity stackedEntity : batch) {
+            LivingEntity livingEntity = stackedEntity.getEntity();
+            if (livingEntity == null || this.stackedEntities.get(livingEntity.getUniqueId()) != stackedEntity)
+                continue;
+
+            if (this.isRemoved(stackedEntity) || stackedEntity.checkNPC()) {
+                this.removeEntityStack(stackedEntity);
+                continue;
+            }
+
+            if (this.isUnconfirmed(stackedEntity))
+                continue; // The spawn batch stacks it once its spawn goes through
+
+            if (stackedEntity.hasMoved() || !requireMovement)
+                seedsByType.computeIfAbsent(livingEntity.getType(), x -> new ArrayList<>()).add(stackedEntity);
+        }
+
+        StackSettingManager stackSettingManager = this.rosePlugin.getManager(StackSettingManager.class);
+        MergeYields mergeYields = this.stackManager.getMergeYields();
+        for (Entry<EntityType, List<StackedEntity>> entry : seedsByType.entrySet()) {
+            if (this.entityStackPass.isOutOfTime()) {
+                this.dirtyEntities.submitAll(entry.getValue()); // Leave them queued for the next run
+                continue;
+            }
+
+            EntityType entityType = entry.getKey();
+            EntityStackSettings stackSettings = stackSettingManager.getEntityStackSettings(entityType);
+            if (stackSettings == null)
+                continue;
+
+            Set<StackedEntity> candidates = this.getNearbyEntityStacks(entry.getValue(), entityType, stackSettings);
+            if (candidates == null) {
+                this.dirtyEntities.submitAll(entry.getValue()); // The server didn't answer in time, try again next run
+                continue;
+            }
+
+            // Each cluster a seed ended up in counts as one attempt
+            this.mergeEntityClusters(candidates, new HashSet<>(entry.getValue()), stackSettings, merged -> mergeYields.recordAttempt(entityType, merged));
+        }
+    }
+
+    /**
+     * Gets every StackedEntity of a type that any of the given StackedEntities could merge with, using one search
+     *
+     * @param seeds the StackedEntities to search around
+     * @param entityType the type of entity to search for
+     * @param stackSettings the stack settings of the type
+     * @return the StackedEntities found, this includes the seeds themselves but not stacks whose spawn is still unconfirmed,
+     * or null if the entities could not be queried from the server in time
+     */
+    private Set<StackedEntity> getNearbyEntityStacks(List<StackedEntity> seeds, EntityType entityType, EntityStackSettings stackSettings) {
+        Set<Long> sectionKeys = this.getSectionKeys(seeds, StackedEntity::getX, StackedEntity::getY, StackedEntity::getZ, stackSettings.getMergeRadius(), SettingKey.ENTITY_MERGE_ENTIRE_CHUNK.get());
+        Set<Entity> entities = this.entityCacheManager.getEntitiesInSections(this.targetWorld, sectionKeys, entityType);
+        if (entities == null)
+            return null;
+
+        Set<StackedEntity> nearby = new HashSet<>();
+        for (Entity entity : entities) {
+            StackedEntity stackedEntity = this.stackedEntities.get(entity.getUniqueId());
+            if (stackedEntity != null && !this.isUnconfirmed(stackedEntity))
+                nearby.add(stackedEntity);
+        }
+        return nearby;
+    }
+
+    /**
+     * Has the stack engine group StackedEntities of the same type into clusters of stacks that can merge, then merges
+     * each cluster
+     *
+     * @param candidates the StackedEntities to group, removed stacks are skipped
+     * @param seeds the StackedEntities the merge was started for, only the clusters that contain one are reported
+     * @param stackSettings the stack settings shared by the StackedEntities
+     * @param results receives whether each cluster that contains a seed was merged
+     */
+    private void mergeEntityClusters(Collection<StackedEntity> candidates, Set<StackedEntity> seeds, EntityStackSettings stackSettings, Consumer<Boolean> results) {
+        boolean lineOfSight = SettingKey.ENTITY_REQUIRE_LINE_OF_SIGHT.get();
+
+        Map<Integer, StackedEntity> stacks = new HashMap<>();
+        List<StackView> views = new ArrayList<>();
+        for (StackedEntity stackedEntity : candidates) {
+            if (this.isRemoved(stackedEntity))
+                continue;
+
+            StackView view = this.toView(stackedEntity, 0);
+            if (!WorldGuardHook.enabled() || WorldGuardHook.testLocation(new Location(this.targetWorld, view.x(), view.y(), view.z()))) {
+                stacks.put(view.id(), stackedEntity);
+                views.add(view);
+            }
+        }
+
+        List<MergeDecision> decisions = this.stackEngine.planMerges(views, (view1, view2) -> stacks.get(view1.id()).compareTo(stacks.get(view2.id())), (view1, view2) -> {
+            StackedEntity stack1 = stacks.get(view1.id());
+            StackedEntity stack2 = stacks.get(view2.id());
+            return stackSettings.testCanStackWith(stack1, stack2, false)
+                    && (!lineOfSight || EntityUtils.hasLineOfSight(stack1.getEntity(), stack2.getEntity(), 0.75, false));
+        }, cluster -> {
+            if (cluster.stream().anyMatch(x -> seeds.contains(stacks.get(x.id()))))
+                results.accept(false);
+        });
+
+        for (MergeDecision decision : decisions) {
+            StackedEntity head = stacks.get(decision.target().id());
+            Set<StackedEntity> targetEntities = new HashSet<>();
+            targetEntities.add(head);
+            decision.sources().forEach(x -> targetEntities.add(stacks.get(x.id())));
+
+            boolean seeded = targetEntities.stream().anyMatch(seeds::contains);
+            boolean merged = this.mergeEntities(head, targetEntities, stackSettings);
+            if (seeded)
+                results.accept(merged);
+        }
+    }
+
+    /**
+     * Describes a StackedEntity to the stack engine
+     *
+     * @param stackedEntity the StackedEntity
+     * @param flags the {@link StackView} flags of the StackedEntity
+     * @return the view of the StackedEntity
+     */
+    private StackView toView(StackedEntity stackedEntity, int flags) {
+        LivingEntity entity = stackedEntity.getEntity();
+        return new StackView(entity.getEntityId(), entity.getType().ordinal(), stackedEntity.getX(), stackedEntity.getY(), stackedEntity.getZ(), stackedEntity.getStackSize(), flags);
+    }
+
+    /**
+     * Gets the rules the stack engine uses for every type of entity, indexed by the ordinal of the EntityType.
+     * Reloading the settings replaces every StackingThread, so the rules never need to be refreshed in place.
+     *
+     * @return the rules, with null for types that have no stack settings
+     */
+    private TypeRules[] createTypeRules() {
+        StackSettingManager stackSettingManager = this.rosePlugin.getManager(StackSettingManager.class);
+        boolean entireChunk = SettingKey.ENTITY_MERGE_ENTIRE_CHUNK.get();
+        boolean dissolveBelowMinimum = SettingKey.ENTITY_MIN_SPLIT_IF_LOWER.get();
+        TypeRules[] typeRules = new TypeRules[ENTITY_TYPES.length];
+        for (EntityType entityType : ENTITY_TYPES) {
+            EntityStackSettings stackSettings = stackSettingManager.getEntityStackSettings(entityType);
+            if (stackSettings != null)
+                typeRules[entityType.ordinal()] = new TypeRules(stackSettings.isStackingEnabled(), stackSettings.getMinStackSize(), stackSettings.getMaxStackSize(),
+                        stackSettings.getMergeRadius(), entireChunk, dissolveBelowMinimum);
+        }
+        return typeRules;
+    }
+
+    /**
+     * Stacks the entities that spawned since the last flush in one batch.
+     * The spawns of each type are first merged with each other, then whatever is left of them is merged with the
+     * existing stacks around it using one shared search per type.
+     */
+    private void flushSpawnBatch() {
+        this.spawnBatchScheduled.set(false);
+        List<StackedEntity> batch = this.spawnBatch.drain();
+        if (batch.isEmpty())
+            return;
+
+        Map<EntityType, List<StackedEntity>> spawnsByType = new HashMap<>();
+        for (StackedEntity stackedEntity : batch) {
+            // Spawns have been added to the world by now, any that are still invalid had their spawn cancelled
+            stackedEntity.transitionLifecycle(StackLifecycle.NEW, StackLifecycle.ACTIVE);
+            LivingEntity livingEntity = stackedEntity.getEntity();
+            if (livingEntity == null || this.stackedEntities.get(livingEntity.getUniqueId()) != stackedEntity)
+                continue;
+
+            if (this.isRemoved(stackedEntity) || stackedEntity.checkNPC()) {
+                this.removeEntityStack(stackedEntity);
+                continue;
+            }
+
+            spawnsByType.computeIfAbsent(livingEntity.getType(), x -> new ArrayList<>()).add(stackedEntity);
+        }
+
+        StackSettingManager stackSettingManager = this.rosePlugin.getManager(StackSettingManager.class);
+        MergeYields mergeYields = this.stackManager.getMergeYields();
+        for (Entry<EntityType, List<StackedEntity>> entry : spawnsByType.entrySet()) {
+            EntityType entityType = entry.getKey();
+            EntityStackSettings stackSettings = stackSettingManager.getEntityStackSettings(entityType);
+            if (stackSettings == null)
+                continue;
+
+            // Merge the spawns with each other first, this doesn't need a search. Clusters that don't merge yet are only
+            // counted once they have been checked against the existing stacks too
+            List<StackedEntity> spawns = new ArrayList<>(entry.getValue());
+            this.mergeEntityClusters(spawns, new HashSet<>(spawns), stackSettings, merged -> {
+                if (merged)
+                    mergeYields.recordAttempt(entityType, true);
+            });
+            spawns.removeIf(this::isRemoved);
+
+            // Then merge whatever is left with the existing stacks around it
+            if (!spawns.isEmpty()) {
+                Set<StackedEntity> candidates = this.getNearbyEntityStacks(spawns, entityType, stackSettings);
+                if (candidates != null) {
+                    candidates.addAll(spawns); // Spawns might not be in the entity cache yet
+                    this.mergeEntityClusters(candidates, new HashSet<>(spawns), stackSettings, merged -> mergeYields.recordAttempt(entityType, merged));
+                } else {
+                    spawns.forEach(this.dirtyEntities::submit); // Look for stacks around them once the server answers
+                }
+            }
+        }
+    }
+
+    /**
+     * Stacks a batch of items by building clusters of every compatible stack around them in one sweep, rather than
+     * searching around each stack separately
+     *
+     * @param batch the StackedItems to stack
+     * @param updateItemNametags true to update the display of each StackedItem in the batch
+     */
+    private void stackItemClusters(List<StackedItem> batch, boolean updateItemNametags) {
+        List<StackedItem> seeds = new ArrayList<>();
+        List<Location> seedLocations = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (this.itemStackPass.isOutOfTime()) {
+                this.pendingItems.submitAll(batch.subList(i, batch.size())); // Leave them queued for the next run
+                break;
+            }
+
+            StackedItem stackedItem = batch.get(i);
+            boolean deferred = this.deferredItemSeeds.remove(stackedItem);
+            if (this.isRemoved(stackedItem)) {
                 this.removeItemStack(stackedItem);
                 continue;
             }
 
+            Item item = stackedItem.getItem();
+            if (this.stackedItems.get(item.getUniqueId()) != stackedItem || this.isUnconfirmed(stackedItem))
+                continue;
+
             if (updateItemNametags)
                 stackedItem.updateDisplay();
 
-            this.tryStackItem(stackedItem);
+            if (this.canItemStack(stackedItem) && (stackedItem.hasMoved() || deferred)) {
+                seeds.add(stackedItem);
+                seedLocations.add(stackedItem.getLocation());
+            }
+        }
+
+        if (seedLocations.isEmpty())
+            return;
+
+        double mergeRadius = SettingKey.ITEM_MERGE_RADIUS.get();
+        Set<Long> sectionKeys = this.getSectionKeys(seedLocations, Location::getX, Location::getY, Location::getZ, mergeRadius, false);
+
+        Set<Entity> entities = this.entityCacheManager.getEntitiesInSections(this.targetWorld, sectionKeys, VersionUtils.ITEM);
+        if (entities == null) {
+            // The server didn't answer in time, try again next run
+            this.deferredItemSeeds.addAll(seeds);
+            this.pendingItems.submitAll(seeds);
+            return;
+        }
+
+        StackClusters<StackedItem> clusters = new StackClusters<>();
+        for (Entity entity : entities) {
+            StackedItem stackedItem = this.stackedItems.get(entity.getUniqueId());
+            if (!this.isRemoved(stackedItem) && !this.isUnconfirmed(stackedItem) && this.canItemStack(stackedItem)) {
+                Location location = entity.getLocation();
+                clusters.add(stackedItem, location.getX(), location.getY(), location.getZ());
+            }
+        }
+
+        for (List<StackedItem> cluster : clusters.build(mergeRadius, false, this::canItemsStack)) {
+            if (this.itemStackPass.isOutOfTime()) {
+                // Leave them queued for the next run, their movement has already been seen so they stay seeds
+                this.deferredItemSeeds.addAll(cluster);
+                this.pendingItems.submitAll(cluster);
+                continue;
+            }
+
+            StackedItem head = cluster.stream().max(StackedItem::compareTo).orElseThrow();
+            Set<StackedItem> targetItems = new HashSet<>();
+            for (StackedItem other : cluster)
+                if (other != head && this.canItemsStack(head, other))
+                    targetItems.add(other);
+
+            if (!targetItems.isEmpty())
+                this.mergeItems(head, targetItems, head.getStackSettings());
+        }
+    }
+
+    private boolean canItemStack(StackedItem stackedItem) {
+        ItemStackSettings stackSettings = stackedItem.getStackSettings();
+        Item item = stackedItem.getItem();
+        return stackSettings != null
+                && stackSettings.isStackingEnabled()
+                && item.getPickupDelay() <= 40
+                && !PersistentDataUtils.isUnstackable(item);
+    }
+
+    private boolean canItemsStack(StackedItem stackedItem1, StackedItem stackedItem2) {
+        Item item1 = stackedItem1.getItem();
+        Item item2 = stackedItem2.getItem();
+        return item1.getItemStack().isSimilar(item2.getItemStack()) && Objects.equals(item1.getOwner(), item2.getOwner());
+    }
+
+    /**
+     * Gets the chunk sections that any of the given stacks could merge with
+     *
+     * @param stacks the stacks, or their locations
+     * @param xFunction gets the x coordinate of a stack
+     * @param yFunction gets the y coordinate of a stack
+     * @param zFunction gets the z coordinate of a stack
+     * @param mergeRadius how far the stacks can merge
+     * @param entireChunk true if stacks can merge with anything in their chunk
+     * @param <T> the type of stack
+     * @return the packed section coordinates, see {@link EntitySection#key(int, int, int)}
+     */
+    private <T> Set<Long> getSectionKeys(List<T> stacks, ToDoubleFunction<T> xFunction, ToDoubleFunction<T> yFunction, ToDoubleFunction<T> zFunction, double mergeRadius, boolean entireChunk) {
+        Set<Long> sectionKeys = new HashSet<>();
+        int minSectionY = this.targetWorld.getMinHeight() >> 4;
+        int maxSectionY = this.targetWorld.getMaxHeight() >> 4;
+        for (T stack : stacks) {
+            double x = xFunction.applyAsDouble(stack);
+            double y = yFunction.applyAsDouble(stack);
+            double z = zFunction.applyAsDouble(stack);
+            int minX, maxX, minY, maxY, minZ, maxZ;
+            if (entireChunk) {
+                minX = maxX = EntitySection.toSection(x);
+                minZ = maxZ = EntitySection.toSection(z);
+                minY = minSectionY;
+                maxY = maxSectionY;
+            } else {
+                minX = EntitySection.toSection(x - mergeRadius);
+                maxX = EntitySection.toSection(x + mergeRadius);
+                minY = EntitySection.toSection(y - mergeRadius);
+                maxY = EntitySection.toSection(y + mergeRadius);
+                minZ = EntitySection.toSection(z - mergeRadius);
+                maxZ = EntitySection.toSection(z + mergeRadius);
+            }
+
+            for (int sectionX = minX; sectionX <= maxX; sectionX++)
+                for (int sectionY = minY; sectionY <= maxY; sectionY++)
+                    for (int sectionZ = minZ; sectionZ <= maxZ; sectionZ++)
+                        sectionKeys.add(EntitySection.key(sectionX, sectionY, sectionZ));
         }
+        return sectionKeys;
     }
 
     public void processNametags() {
@@ -333,6 +1035,11 @@ public class StackingThread implements StackingLogic, AutoCloseable {
         if (this.entityCleanupTask != null)
             this.entityCleanupTask.cancel();
 
+        if (this.proximityTierTask != null)
+            this.proximityTierTask.cancel();
+
+        this.nextEntitySnapshot = null;
+
         // Flush remaining blocks and entities, this typically happens when chunks are
         // still loaded and Bukkit#unloadWorld is called
         this.saveChunkEntities(
@@ -347,6 +1054,11 @@ public class StackingThread implements StackingLogic, AutoCloseable {
         // go which is more efficient
         this.stackChunkData.clear();
         this.stackedEntities.clear();
+        this.dirtyEntities.clear();
+        this.pendingItems.clear();
+        this.deferredItemSeeds.clear();
+        this.unstackCandidates.clear();
+        this.spawnBatch.clear();
     }
 
     @Override
@@ -423,11 +1135,11 @@ public class StackingThread implements StackingLogic, AutoCloseable {
 
     @Override
     public void removeEntityStack(StackedEntity stackedEntity) {
+        stackedEntity.markRemoved();
         LivingEntity entity = stackedEntity.getEntity();
         if (entity != null) {
             UUID key = stackedEntity.getEntity().getUniqueId();
             this.stackedEntities.remove(key);
-            this.setRemoved(entity);
         } else {
             // Entity is null so we have to remove by value instead
             for (Entry<UUID, StackedEntity> entry : this.stackedEntities.entrySet()) {
@@ -441,11 +1153,12 @@ public class StackingThread implements StackingLogic, AutoCloseable {
 
     @Override
     public void removeItemStack(StackedItem stackedItem) {
+        stackedItem.markRemoved();
+        this.deferredItemSeeds.remove(stackedItem);
         Item item = stackedItem.getItem();
         if (item != null) {
             UUID key = stackedItem.getItem().getUniqueId();
             this.stackedItems.remove(key);
-            this.setRemoved(item);
         } else {
             // Item is null so we have to remove by value instead
             for (Entry<UUID, StackedItem> entry : this.stackedItems.entrySet()) {
@@ -489,7 +1202,7 @@ public class StackingThread implements StackingLogic, AutoCloseable {
         if (entityStackClearEvent.isCancelled())
             return 0;
 
-        toRemove.stream().map(StackedEntity::getEntity).forEach(this::setRemoved);
+        toRemove.forEach(StackedEntity::markRemoved);
         toRemove.stream().map(StackedEntity::getEntity).forEach(LivingEntity::remove);
         this.stackedEntities.values().removeIf(toRemove::contains);
 
@@ -505,7 +1218,7 @@ public class StackingThread implements StackingLogic, AutoCloseable {
         if (itemStackClearEvent.isCancelled())
             return 0;
 
-        toRemove.stream().map(StackedItem::getItem).forEach(this::setRemoved);
+        toRemove.forEach(StackedItem::markRemoved);
         toRemove.stream().map(StackedItem::getItem).forEach(Item::remove);
         this.stackedItems.values().removeIf(toRemove::contains);
 
@@ -516,6 +1229,7 @@ public class StackingThread implements StackingLogic, AutoCloseable {
     public void updateStackedEntityKey(LivingEntity oldKey, StackedEntity stackedEntity) {
         this.stackedEntities.remove(oldKey.getUniqueId());
         this.stackedEntities.put(stackedEntity.getEntity().getUniqueId(), stackedEntity);
+        this.markEntityDirty(stackedEntity);
     }
 
     @Override
@@ -531,6 +1245,7 @@ public class StackingThread implements StackingLogic, AutoCloseable {
 
         StackedEntity newlySplit = stackedEntity.decreaseStackSize();
         this.stackedEntities.put(newlySplit.getEntity().getUniqueId(), newlySplit);
+        this.markEntityDirty(newlySplit);
         this.tryStackEntity(newlySplit);
         return newlySplit;
     }
@@ -568,11 +1283,21 @@ public class StackingThread implements StackingLogic, AutoCloseable {
 
         StackedEntity newStackedEntity = new StackedEntity(livingEntity);
         this.stackedEntities.put(livingEntity.getUniqueId(), newStackedEntity);
+        this.markEntityDirty(newStackedEntity);
 
         if (tryStack && SettingKey.ENTITY_INSTANT_STACK.get()) {
-            livingEntity.setMetadata(NEW_METADATA, new FixedMetadataValue(this.rosePlugin, true));
+            // The entity may not be in the world yet, keep it from being treated as removed until we're done
+            newStackedEntity.transitionLifecycle(StackLifecycle.ACTIVE, StackLifecycle.NEW);
+            if (SettingKey.ENTITY_INSTANT_STACK_BATCHING.get()) {
+                // Stacked along with everything else that spawns this tick
+                this.spawnBatch.submit(newStackedEntity);
+                if (this.spawnBatchScheduled.compareAndSet(false, true))
+                    ThreadUtils.runSync(this::flushSpawnBatch);
+                return newStackedEntity;
+            }
+
             this.tryStackEntity(newStackedEntity);
-            livingEntity.removeMetadata(NEW_METADATA, this.rosePlugin);
+            newStackedEntity.transitionLifecycle(StackLifecycle.NEW, StackLifecycle.ACTIVE);
         }
 
         return newStackedEntity;
@@ -591,9 +1316,9 @@ public class StackingThread implements StackingLogic, AutoCloseable {
         this.stackedItems.put(item.getUniqueId(), newStackedItem);
 
         if (tryStack && SettingKey.ITEM_INSTANT_STACK.get()) {
-            item.setMetadata(NEW_METADATA, new FixedMetadataValue(this.rosePlugin, true));
+            newStackedItem.transitionLifecycle(StackLifecycle.ACTIVE, StackLifecycle.NEW);
             this.tryStackItem(newStackedItem);
-            item.removeMetadata(NEW_METADATA, this.rosePlugin);
+            newStackedItem.transitionLifecycle(StackLifecycle.NEW, StackLifecycle.ACTIVE);
         }
 
         // Only update the display after stacking to avoid needing to calculate the name unnecessarily
@@ -635,7 +1360,9 @@ public class StackingThread implements StackingLogic, AutoCloseable {
         if (!this.stackManager.isEntityStackingEnabled() || NPCsHook.isNPC(stackedEntity.getEntity()))
             return;
 
+        stackedEntity.transitionLifecycle(StackLifecycle.REMOVED, StackLifecycle.ACTIVE);
         this.stackedEntities.put(stackedEntity.getEntity().getUniqueId(), stackedEntity);
+        this.markEntityDirty(stackedEntity);
 
         if (SettingKey.ENTITY_INSTANT_STACK.get())
             this.tryStackEntity(stackedEntity);
@@ -646,6 +1373,7 @@ public class StackingThread implements StackingLogic, AutoCloseable {
         if (!this.stackManager.isItemStackingEnabled())
             return;
 
+        stackedItem.transitionLifecycle(StackLifecycle.REMOVED, StackLifecycle.ACTIVE);
         this.stackedItems.put(stackedItem.getItem().getUniqueId(), stackedItem);
         this.tryStackItem(stackedItem);
     }
@@ -656,12 +1384,12 @@ public class StackingThread implements StackingLogic, AutoCloseable {
         if (world == null)
             return;
 
-        ThreadUtils.runAsync(() -> {
+        ThreadUtils.runAsync(Pool.STACKING, () -> {
             EntityStackSettings stackSettings = this.rosePlugin.getManager(StackSettingManager.class).getEntityStackSettings(entityType);
             NMSHandler nmsHandler = NMSAdapter.getHandler();
             boolean removeAi = stackSettings.isMobAIDisabled();
 
-            Collection<Entity> nearbyEntities = this.entityCacheManager.getNearbyEntities(location, stackSettings.getMergeRadius(), x -> x.getType() == entityType);
+            Collection<Entity> nearbyEntities = this.entityCacheManager.getNearbyEntities(location, stackSettings.getMergeRadius(), entityType);
             Set<StackedEntity> nearbyStackedEntities = new HashSet<>();
             for (Entity entity : nearbyEntities) {
                 StackedEntity stackedEntity = this.stackManager.getStackedEntity((LivingEntity) entity);
@@ -673,34 +1401,67 @@ public class StackingThread implements StackingLogic, AutoCloseable {
             Set<StackedEntity> newStackedEntities = new HashSet<>();
             switch (this.stackManager.getEntityDataStorageType(entityType)) {
                 case NBT -> {
+                    Map<Integer, StackedEntity> stacks = new HashMap<>();
+                    List<StackView> views = new ArrayList<>();
+                    for (StackedEntity stackedEntity : nearbyStackedEntities) {
+                        StackView view = this.toView(stackedEntity, 0);
+                        stacks.put(view.id(), stackedEntity);
+                        views.add(view);
+                    }
+
+                    // Each entity keeps its own data, so every spawned entity is created and placed on its own
                     for (int i = 0; i < amount; i++) {
                         StackedEntity newStack = this.createNewEntity(nmsHandler, entityType, location, spawnReason, removeAi);
-                        Optional<StackedEntity> matchingEntity = nearbyStackedEntities.stream().filter(x ->
-                                stackSettings.testCanStackWith(x, newStack, false, true)).findFirst();
-                        if (matchingEntity.isPresent()) {
-                            matchingEntity.get().increaseStackSize(newStack.getEntity(), false);
-                            updatedEntities.add(matchingEntity.get());
-                        } else {
-                            nearbyStackedEntities.add(newStack);
+                        SpawnDecision decision = this.stackEngine.planSpawns(entityType.ordinal(), 1, views, (view, added) ->
+                                stackSettings.testCanStackWith(stacks.get(view.id()), newStack, false, true), () -> false).get(0);
+                        if (decision.isNewStack()) {
+                            StackView view = this.toView(newStack, 0);
+                            stacks.put(view.id(), newStack);
+                            views.add(view);
                             newStackedEntities.add(newStack);
+                        } else {
+                            StackedEntity target = stacks.get(decision.target().id());
+                            target.increaseStackSize(newStack.getEntity(), false);
+                            updatedEntities.add(target);
+                            views.set(views.indexOf(decision.target()), this.toView(target, 0));
                         }
                     }
                 }
 
                 case SIMPLE -> {
-                    for (int i = amount; i > 0; i--) {
-                        Optional<StackedEntity> matchingEntity = nearbyStackedEntities.stream().filter(x -> stackSettings.testCanStackWith(x, x, false, true)).findFirst();
-                        if (matchingEntity.isPresent()) {
-                            // Increase stack size by as much as we can
-                            int amountToIncrease = Math.min(i, stackSettings.getMaxStackSize() - matchingEntity.get().getStackSize());
-                            matchingEntity.get().increaseStackSize(amountToIncrease, false);
-                            updatedEntities.add(matchingEntity.get());
-                            i -= amountToIncrease;
+                    Map<Integer, StackedEntity> stacks = new HashMap<>();
+                    List<StackView> views = new ArrayList<>();
+                    for (StackedEntity stackedEntity : nearbyStackedEntities) {
+                        StackView view = this.toView(stackedEntity, 0);
+                        stacks.put(view.id(), stackedEntity);
+                        views.add(view);
+                    }
+
+                    // The first new stack is created to check if new stacks can take in more entities, then used for the spawn
+                    List<StackedEntity> firstNewStack = new ArrayList<>(1);
+                    List<SpawnDecision> decisions = this.stackEngine.planSpawns(entityType.ordinal(), amount, views, (view, added) -> {
+                        StackedEntity stackedEntity = stacks.get(view.id());
+                        return stackSettings.testCanStackWith(stackedEntity, stackedEntity, false, true);
+                    }, () -> {
+                        StackedEntity newStack = this.createNewEntity(nmsHandler, entityType, location, spawnReason, removeAi);
+                        firstNewStack.add(newStack);
+                        return stackSettings.testCanStackWith(newStack, newStack, false, true);
+                    });
+
+                    for (SpawnDecision decision : decisions) {
+                        StackedEntity target;
+                        int added = decision.amount();
+                        if (decision.isNewStack()) {
+                            target = firstNewStack.isEmpty() ? this.createNewEntity(nmsHandler, entityType, location, spawnReason, removeAi) : firstNewStack.remove(0);
+                            newStackedEntities.add(target);
+                            added--; // The new entity is the first one
                         } else {
-                            StackedEntity newStack = this.createNewEntity(nmsHandler, entityType, location, spawnReason, removeAi);
-                            nearbyStackedEntities.add(newStack);
-                            newStackedEntities.add(newStack);
+                            target = stacks.get(decision.target().id());
+                            updatedEntities.add(target);
                         }
+
+                        if (added > 0)
+                            target.increaseStackSize(added, false);
                     }
                 }
             }
@@ -724,6 +1485,55 @@ public class StackingThread implements StackingLogic, AutoCloseable {
         });
     }
 
+    /**
+     * Tries to fold an entity that is about to be added to the world into a nearby stack instead, the same way
+     * {@link #preStackEntities(EntityType, int, Location, SpawnReason)} stacks entities that are never spawned
+     *
+     * @param livingEntity The entity that is about to be added to the world
+     * @return true if the entity was added to an existing stack and should not be spawned, false otherwise
+     */
+    public boolean interceptSpawn(LivingEntity livingEntity) {
+        if (livingEntity.isValid() || this.stackedEntities.containsKey(livingEntity.getUniqueId()))
+            return false; // Already in the world, too late to keep it out
+
+        if (livingEntity instanceof Player || livingEntity instanceof ArmorStand || NPCsHook.isNPC(livingEntity))
+            return false;
+
+        EntityStackSettings stackSettings = this.rosePlugin.getManager(StackSettingManager.class).getEntityStackSettings(livingEntity);
+        if (stackSettings == null || !stackSettings.isStackingEnabled())
+            return false;
+
+        Location location = livingEntity.getLocation();
+        if (!WorldGuardHook.testLocation(location))
+            return false;
+
+        Collection<Entity> nearbyEntities;
+        if (!SettingKey.ENTITY_MERGE_ENTIRE_CHUNK.get()) {
+            nearbyEntities = this.entityCacheManager.getNearbyEntities(location, stackSettings.getMergeRadius(), livingEntity.getType());
+        } else {
+            nearbyEntities = this.entityCacheManager.getEntitiesInChunk(location, livingEntity.getType(), x -> true);
+        }
+
+        StackedEntity newStack = null;
+        for (Entity entity : nearbyEntities) {
+            StackedEntity target = this.stackedEntities.get(entity.getUniqueId());
+            if (this.isRemoved(target) || this.isUnconfirmed(target) || target.getStackSize() + 1 < stackSettings.getMinStackSize())
+                continue;
+
+            // Only build the stack once we know there is something to compare it against
+            if (newStack == null)
+                newStack = new StackedEntity(livingEntity, NMSAdapter.getHandler().createEntityDataStorage(livingEntity, this.stackManager.getEntityDataStorageType(livingEntity.getType())), false);
+
+            if (stackSettings.testCanStackWith(target, newStack, false, true) && WorldGuardHook.testLocation(entity.getLocation())) {
+                target.increaseStackSize(livingEntity, true);
+                this.markEntityDirty(target);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     private StackedEntity createNewEntity(NMSHandler nmsHandler, EntityType entityType, Location location, SpawnReason spawnReason, boolean removeAi) {
         LivingEntity entity = nmsHandler.createNewEntityUnspawned(entityType, location, spawnReason);
         if (removeAi)
@@ -844,7 +1654,7 @@ public class StackingThread implements StackingLogic, AutoCloseable {
 
         if (!stackedSpawners.isEmpty() || !stackedBlocks.isEmpty()) {
             this.stackChunkData.put(chunk, new StackChunkData(stackedSpawners, stackedBlocks));
-            ThreadUtils.runAsync(() -> {
+            ThreadUtils.runAsync(Pool.NAMETAGS, () -> {
                 stackedSpawners.values().forEach(StackedSpawner::updateDisplay);
                 stackedBlocks.values().forEach(StackedBlock::updateDisplay);
             });
@@ -865,6 +1675,7 @@ public class StackingThread implements StackingLogic, AutoCloseable {
                 StackedEntity stackedEntity = DataUtils.readStackedEntity(livingEntity, this.stackManager.getEntityDataStorageType(entity.getType()));
                 if (stackedEntity != null) {
                     this.stackedEntities.put(stackedEntity.getEntity().getUniqueId(), stackedEntity);
+                    this.markEntityDirty(stackedEntity);
                     stackedEntities.add(stackedEntity);
                 } else {
                     this.createEntityStack(livingEntity, true);
@@ -890,7 +1701,7 @@ public class StackingThread implements StackingLogic, AutoCloseable {
         }
 
         if (!stackedEntities.isEmpty() || !stackedItems.isEmpty()) {
-            ThreadUtils.runAsync(() -> {
+            ThreadUtils.runAsync(Pool.NAMETAGS, () -> {
                 stackedEntities.forEach(StackedEntity::updateDisplay);
                 stackedItems.forEach(StackedItem::updateDisplay);
             });
@@ -962,11 +1773,30 @@ public class StackingThread implements StackingLogic, AutoCloseable {
     }
 
     /**
-     * Tries to stack a StackedEntity with all other StackedEntities
+     * Queues a StackedEntity to be checked on the next stacking pass
+     *
+     * @param stackedEntity the StackedEntity that is new, has moved, changed size, or was removed
+     */
+    public void markEntityDirty(StackedEntity stackedEntity) {
+        this.dirtyEntities.submit(stackedEntity);
+    }
+
+    /**
+     * Tries to stack a StackedEntity with all other StackedEntities if it has moved
      *
      * @param stackedEntity the StackedEntity to try to stack
      */
     private void tryStackEntity(StackedEntity stackedEntity) {
+        this.tryStackEntity(stackedEntity, true);
+    }
+
+    /**
+     * Tries to stack a StackedEntity with all other StackedEntities
+     *
+     * @param stackedEntity the StackedEntity to try to stack
+     * @param requireMovement true to skip the StackedEntity if it hasn't moved since it was last checked
+     */
+    private void tryStackEntity(StackedEntity stackedEntity, boolean requireMovement) {
         EntityStackSettings stackSettings = stackedEntity.getStackSettings();
         if (stackSettings == null)
             return;
@@ -976,38 +1806,84 @@ public class StackingThread implements StackingLogic, AutoCloseable {
             return;
         }
 
-        LivingEntity entity = stackedEntity.getEntity();
-        if (this.isRemoved(entity) || !stackedEntity.hasMoved())
+        if (this.isRemoved(stackedEntity) || (!stackedEntity.hasMoved() && requireMovement))
             return;
 
+        LivingEntity entity = stackedEntity.getEntity();
+
         if (!WorldGuardHook.testLocation(entity.getLocation()))
             return;
 
         Collection<Entity> nearbyEntities;
-        Predicate<Entity> predicate = x -> x.getType() == entity.getType();
         if (!SettingKey.ENTITY_MERGE_ENTIRE_CHUNK.get()) {
-            nearbyEntities = this.entityCacheManager.getNearbyEntities(entity.getLocation(), stackSettings.getMergeRadius(), predicate);
+            nearbyEntities = this.entityCacheManager.getNearbyEntities(entity.getLocation(), stackSettings.getMergeRadius(), entity.getType());
         } else {
-            nearbyEntities = this.entityCacheManager.getEntitiesInChunk(entity.getLocation(), predicate);
+            nearbyEntities = this.entityCacheManager.getEntitiesInChunk(entity.getLocation(), entity.getType(), x -> true);
         }
 
-        Set<StackedEntity> targetEntities = new HashSet<>();
-        targetEntities.add(stackedEntity);
-
+        Map<Integer, StackedEntity> stacks = new HashMap<>();
+        List<StackView> nearby = new ArrayList<>();
         for (Entity otherEntity : nearbyEntities) {
-            if (entity == otherEntity || this.isRemoved(otherEntity))
+            if (entity == otherEntity)
                 continue;
 
             StackedEntity other = this.stackedEntities.get(otherEntity.getUniqueId());
-            if (other == null)
+            if (this.isRemoved(other) || this.isUnconfirmed(other))
                 continue;
 
-            if (stackSettings.testCanStackWith(stackedEntity, other, false)
-                    && (!SettingKey.ENTITY_REQUIRE_LINE_OF_SIGHT.get() || EntityUtils.hasLineOfSight(entity, otherEntity, 0.75, false))
-                    && WorldGuardHook.testLocation(otherEntity.getLocation()))
-                targetEntities.add(other);
+            StackView view = this.toView(other, 0);
+            stacks.put(view.id(), other);
+            nearby.add(view);
+        }
+
+        StackView seed = this.toView(stackedEntity, 0);
+        stacks.put(seed.id(), stackedEntity);
+
+        // When only individuals count towards the minimum, the merge always goes into the stack it was started from
+        Comparator<StackView> preference = SettingKey.ENTITY_MIN_STACK_COUNT_ONLY_INDIVIDUALS.get()
+                ? Comparator.comparing(view -> view.id() == seed.id())
+                : (view1, view2) -> stacks.get(view1.id()).compareTo(stacks.get(view2.id()));
+
+        boolean lineOfSight = SettingKey.ENTITY_REQUIRE_LINE_OF_SIGHT.get();
+        MergeDecision decision = this.stackEngine.planMerge(seed, nearby, preference, (view1, view2) -> {
+            StackedEntity other = stacks.get(view2.id());
+            return stackSettings.testCanStackWith(stackedEntity, other, false)
+                    && (!lineOfSight || EntityUtils.hasLineOfSight(entity, other.getEntity(), 0.75, false))
+                    && WorldGuardHook.testLocation(other.getLocation());
+        });
+
+        boolean merged = false;
+        if (decision != null) {
+            Set<StackedEntity> targetEntities = new HashSet<>();
+            targetEntities.add(stackedEntity);
+            targetEntities.add(stacks.get(decision.target().id()));
+            decision.sources().forEach(x -> targetEntities.add(stacks.get(x.id())));
+            merged = this.mergeEntities(stackedEntity, targetEntities, stackSettings);
+        }
+        this.stackManager.getMergeYields().recordAttempt(entity.getType(), merged);
+    }
+
+    /**
+     * Calls an event for stacks being merged. Regions of this world may be stacked in parallel, the events are still
+     * called one at a time so listeners never handle two merges of this world at once.
+     *
+     * @param event The event to call
+     */
+    private void callStackEvent(Event event) {
+        synchronized (this.stackEventLock) {
+            Bukkit.getPluginManager().callEvent(event);
         }
+    }
 
+    /**
+     * Merges StackedEntities together into one stack, firing a single EntityStackEvent
+     *
+     * @param stackedEntity the StackedEntity the merge was started from
+     * @param targetEntities the StackedEntities to merge, including stackedEntity
+     * @param stackSettings the stack settings shared by the StackedEntities
+     * @return true if any StackedEntities were merged
+     */
+    private boolean mergeEntities(StackedEntity stackedEntity, Set<StackedEntity> targetEntities, EntityStackSettings stackSettings) {
         StackedEntity increased;
         int totalSize;
         List<StackedEntity> removable = new ArrayList<>(targetEntities.size());
@@ -1036,12 +1912,12 @@ public class StackingThread implements StackingLogic, AutoCloseable {
         }
 
         if (removable.isEmpty() || totalSize < stackSettings.getMinStackSize())
-            return;
+            return false;
 
         EntityStackEvent entityStackEvent = new EntityStackEvent(removable, increased);
-        Bukkit.getPluginManager().callEvent(entityStackEvent);
+        this.callStackEvent(entityStackEvent);
         if (entityStackEvent.isCancelled())
-            return;
+            return false;
 
         for (StackedEntity toStack : removable) {
             stackSettings.applyStackProperties(toStack.getEntity(), increased.getEntity());
@@ -1050,7 +1926,11 @@ public class StackingThread implements StackingLogic, AutoCloseable {
             this.removeEntityStack(toStack);
         }
 
-        ThreadUtils.runOnPrimary(() -> removable.stream().map(StackedEntity::getEntity).forEach(Entity::remove));
+        // The surviving stack may have neighbours of its own that were out of range of this one
+        this.markEntityDirty(increased);
+
+        this.removeOnPrimary(removable.stream().map(StackedEntity::getEntity).toList());
+        return true;
     }
 
     /**
@@ -1068,11 +1948,10 @@ public class StackingThread implements StackingLogic, AutoCloseable {
                 || PersistentDataUtils.isUnstackable(item))
             return;
 
-        if (this.isRemoved(item))
+        if (this.isRemoved(stackedItem))
             return;
 
-        Predicate<Entity> predicate = x -> x.getType() == VersionUtils.ITEM;
-        Set<Item> nearbyItems = this.entityCacheManager.getNearbyEntities(stackedItem.getLocation(), SettingKey.ITEM_MERGE_RADIUS.get(), predicate)
+        Set<Item> nearbyItems = this.entityCacheManager.getNearbyEntities(stackedItem.getLocation(), SettingKey.ITEM_MERGE_RADIUS.get(), VersionUtils.ITEM)
                 .stream()
                 .map(x -> (Item) x)
                 .collect(Collectors.toSet());
@@ -1083,18 +1962,28 @@ public class StackingThread implements StackingLogic, AutoCloseable {
                     || otherItem.getPickupDelay() > 40
                     || !item.getItemStack().isSimilar(otherItem.getItemStack())
                     || !Objects.equals(item.getOwner(), otherItem.getOwner())
-                    || PersistentDataUtils.isUnstackable(otherItem)
-                    || this.isRemoved(otherItem))
+                    || PersistentDataUtils.isUnstackable(otherItem))
                 continue;
 
             StackedItem other = this.stackedItems.get(otherItem.getUniqueId());
-            if (other != null)
+            if (!this.isRemoved(other) && !this.isUnconfirmed(other))
                 targetItems.add(other);
         }
 
         if (targetItems.isEmpty())
             return;
 
+        this.mergeItems(stackedItem, targetItems, stackSettings);
+    }
+
+    /**
+     * Merges StackedItems together into the largest of them, firing a single ItemStackEvent for the whole merge
+     *
+     * @param stackedItem the StackedItem the merge was started from
+     * @param targetItems the other StackedItems to merge
+     * @param stackSettings the stack settings shared by the StackedItems
+     */
+    private void mergeItems(StackedItem stackedItem, Set<StackedItem> targetItems, ItemStackSettings stackSettings) {
         int totalSize = stackedItem.getStackSize();
         Set<StackedItem> removable = new HashSet<>();
         for (StackedItem target : targetItems) {
@@ -1104,30 +1993,40 @@ public class StackingThread implements StackingLogic, AutoCloseable {
             }
         }
 
-        StackedItem headStack = stackedItem;
-        for (StackedItem other : removable) {
-            StackedItem increased = headStack.compareTo(other) > 0 ? headStack : other;
-            StackedItem removed = increased == headStack ? other : headStack;
-
-            headStack = increased;
+        if (removable.isEmpty())
+            return;
 
-            ItemStackEvent itemStackEvent = new ItemStackEvent(removed, increased);
-            Bukkit.getPluginManager().callEvent(itemStackEvent);
-            if (itemStackEvent.isCancelled())
-                continue;
+        StackedItem headStack = stackedItem;
+        for (StackedItem other : removable)
+            if (other.compareTo(headStack) > 0)
+                headStack = other;
+
+        List<StackedItem> removedStacks = new ArrayList<>(removable.size());
+        if (headStack != stackedItem)
+            removedStacks.add(stackedItem);
+        for (StackedItem other : removable)
+            if (other != headStack)
+                removedStacks.add(other);
+
+        ItemStackEvent itemStackEvent = new ItemStackEvent(removedStacks, headStack);
+        this.callStackEvent(itemStackEvent);
+        if (itemStackEvent.isCancelled())
+            return;
 
-            increased.increaseStackSize(removed.getStackSize(), false);
+        for (StackedItem removed : removedStacks) {
+            headStack.increaseStackSize(removed.getStackSize(), false);
             removed.increaseStackSize(-removed.getStackSize(), false);
-            if (SettingKey.ITEM_RESET_DESPAWN_TIMER_ON_MERGE.get())
-                increased.getItem().setTicksLived(1); // Reset the 5 minute pickup timer
 
-            increased.getItem().setPickupDelay(Math.max(increased.getItem().getPickupDelay(), removed.getItem().getPickupDelay()));
+            headStack.getItem().setPickupDelay(Math.max(headStack.getItem().getPickupDelay(), removed.getItem().getPickupDelay()));
             removed.getItem().setPickupDelay(100); // Don't allow the item we just merged to get picked up or stacked
 
-            ThreadUtils.runOnPrimary(() -> removed.getItem().remove());
+            this.removeOnPrimary(List.of(removed.getItem()));
             this.removeItemStack(removed);
         }
 
+        if (SettingKey.ITEM_RESET_DESPAWN_TIMER_ON_MERGE.get())
+            headStack.getItem().setTicksLived(1); // Reset the 5 minute pickup timer
+
         headStack.updateDisplay();
     }
 
@@ -1143,20 +2042,88 @@ public class StackingThread implements StackingLogic, AutoCloseable {
 
     private void loadExistingEntityStack(UUID entityUUID, StackedEntity stackedEntity) {
         stackedEntity.updateEntity();
+        stackedEntity.transitionLifecycle(StackLifecycle.REMOVED, StackLifecycle.ACTIVE);
         this.stackedEntities.put(entityUUID, stackedEntity);
+        this.markEntityDirty(stackedEntity);
     }
 
     private void loadExistingItemStack(UUID entityUUID, StackedItem stackedItem) {
         stackedItem.updateItem();
+        stackedItem.transitionLifecycle(StackLifecycle.REMOVED, StackLifecycle.ACTIVE);
         this.stackedItems.put(entityUUID, stackedItem);
     }
 
-    private boolean isRemoved(Entity entity) {
-        return entity == null || (!entity.hasMetadata(NEW_METADATA) && !entity.isValid()) || REMOVED_ENTITIES.getIfPresent(entity.getUniqueId()) != null;
+    private boolean isRemoved(StackedEntity stackedEntity) {
+        if (stackedEntity == null)
+            return true;
+
+        StackLifecycle lifecycle = stackedEntity.getLifecycle();
+        if (lifecycle == StackLifecycle.REMOVED)
+            return true;
+
+        LivingEntity entity = stackedEntity.getEntity();
+        return entity == null || (lifecycle != StackLifecycle.NEW && !entity.isValid());
     }
 
-    private void setRemoved(Entity entity) {
-        REMOVED_ENTITIES.put(entity.getUniqueId(), true);
+    /**
+     * Checks if a stack was created for a spawn that hasn't been confirmed yet. Its entity may still have its spawn
+     * cancelled, so it must not be picked as a merge candidate until the spawn batch marks it as active.
+     *
+     * @param stackedEntity The StackedEntity to check
+     * @return true if the stack is still new
+     */
+    private boolean isUnconfirmed(StackedEntity stackedEntity) {
+        return stackedEntity.getLifecycle() == StackLifecycle.NEW;
+    }
+
+    private boolean isUnconfirmed(StackedItem stackedItem) {
+        return stackedItem.getLifecycle() == StackLifecycle.NEW;
+    }
+
+    private boolean isRemoved(StackedItem stackedItem) {
+        if (stackedItem == null)
+            return true;
+
+        StackLifecycle lifecycle = stackedItem.getLifecycle();
+        if (lifecycle == StackLifecycle.REMOVED)
+            return true;
+
+        Item item = stackedItem.getItem();
+        return item == null || (lifecycle != StackLifecycle.NEW && !item.isValid());
+    }
+
+    /**
+     * Removes entities on the main thread, keeping them from being picked back up as orphans until they are gone
+     *
+     * @param entities The entities to remove
+     */
+    private void removeOnPrimary(Collection<? extends Entity> entities) {
+        entities.forEach(x -> this.pendingRemovals.add(x.getUniqueId()));
+        ThreadUtils.runOnPrimary(() -> entities.forEach(x -> {
+            x.remove();
+            this.pendingRemovals.remove(x.getUniqueId());
+        }));
+    }
+
+    /**
+     * @return how many ticks the tasks of this thread are behind schedule
+     */
+    public long getTicksBehind() {
+        return this.stackManager.getStackingScheduler().getTicksBehind(this.targetWorld);
+    }
+
+    /**
+     * @return the time in milliseconds the last full entity stacking pass took, or -1 if none has completed yet
+     */
+    public long getEntityStackPassTime() {
+        return this.entityStackPass.getLastCompletionTime();
+    }
+
+    /**
+     * @return the time in milliseconds the last full item stacking pass took, or -1 if none has completed yet
+     */
+    public long getItemStackPassTime() {
+        return this.itemStackPass.getLastCompletionTime();
     }
 
     /**
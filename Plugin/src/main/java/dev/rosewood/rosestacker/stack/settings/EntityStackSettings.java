@@ -17,6 +17,8 @@ import dev.rosewood.rosestacker.utils.PersistentDataUtils;
 import dev.rosewood.rosestacker.utils.StackerUtils;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -53,6 +55,8 @@ public class EntityStackSettings extends StackSettings {
     public static final String MOOSHROOM_EXTRA_MUSHROOMS_PER_COW_IN_STACK = "extra-mushrooms-per-cow-in-stack";
     public static final String SNOW_GOLEM_FORCE_CUSTOM_NAMED_STACKING = "force-custom-named-stacking";
 
+    private static final int CONDITION_REORDER_INTERVAL = 4096; // Comparisons between reordering stack conditions
+
     // Data pertaining to this EntityType
     private final EntityType entityType;
     private final Class<? extends Entity> entityClass;
@@ -61,6 +65,9 @@ public class EntityStackSettings extends StackSettings {
 
     // Conditions and settings loaded specifically for this entity type
     private final List<StackConditionEntry<?>> stackConditions;
+    private final boolean reorderConditions;
+    private volatile StackConditionEntry<?>[] compiledConditions;
+    private int comparisons;
     private final Map<String, EntitySetting> extraSettings;
 
     // Settings that apply to every entity
@@ -140,6 +147,11 @@ public class EntityStackSettings extends StackSettings {
         this.disableAllMobAI = this.settingsConfiguration.getDefaultedBoolean("disable-all-mob-ai");
 
         this.stackConditions.forEach(StackConditionEntry::load);
+        this.reorderConditions = SettingKey.ENTITY_STACK_CONDITION_REORDERING.get();
+        this.compiledConditions = this.stackConditions.stream()
+                .filter(x -> x.enabled)
+                .sorted(Comparator.comparing(x -> x.condition.cost()))
+                .toArray(StackConditionEntry<?>[]::new);
     }
 
     private void putSetting(String key, Object defaultValue) {
@@ -207,8 +219,15 @@ public class EntityStackSettings extends StackSettings {
         LivingEntity entity1 = stack1.getEntity();
         LivingEntity entity2 = stack2.getEntity();
 
-        for (StackConditionEntry<?> stackCondition : this.stackConditions) {
+        // Not atomic, a few lost counts only delay the next reorder
+        if (this.reorderConditions && ++this.comparisons % CONDITION_REORDER_INTERVAL == 0)
+            this.reorderConditions();
+
+        // Only the conditions that apply to this EntityType and are enabled, cheapest first
+        for (StackConditionEntry<?> stackCondition : this.compiledConditions) {
             EntityStackComparisonResult result = stackCondition.apply(this, stack1, stack2, entity1, entity2, comparingForUnstack, ignorePositions);
+            if (this.reorderConditions)
+                stackCondition.record(result);
             if (result != EntityStackComparisonResult.CAN_STACK)
                 return result;
         }
@@ -216,6 +235,32 @@ public class EntityStackSettings extends StackSettings {
         return EntityStackComparisonResult.CAN_STACK;
     }
 
+    /**
+     * Moves the conditions that reject the most comparisons forward within each cost, so failing pairs are rejected
+     * sooner without ever running an expensive condition before a cheaper one.
+     * Other threads keep counting while this runs, so the rates are read once up front and the sort only ever sees
+     * those values.
+     */
+    private void reorderConditions() {
+        StackConditionEntry<?>[] current = this.compiledConditions;
+        double[] rejectionRates = new double[current.length];
+        Integer[] order = new Integer[current.length];
+        for (int i = 0; i < current.length; i++) {
+            rejectionRates[i] = current[i].getRejectionRate();
+            order[i] = i;
+        }
+
+        Arrays.sort(order, Comparator.comparing((Integer x) -> current[x].condition.cost())
+                .thenComparing(Comparator.<Integer>comparingDouble(x -> rejectionRates[x]).reversed()));
+
+        StackConditionEntry<?>[] conditions = new StackConditionEntry<?>[current.length];
+        for (int i = 0; i < order.length; i++) {
+            conditions[i] = current[order[i]];
+            conditions[i].decay();
+        }
+        this.compiledConditions = conditions;
+    }
+
     @Override
     public String getConfigurationSectionKey() {
         return this.entityType.name();
@@ -370,6 +415,7 @@ public class EntityStackSettings extends StackSettings {
         private final StackConditions.StackCondition<T> condition;
         private boolean enabled;
         private boolean displayedWarning;
+        private int evaluations, rejections; // Only counted while reordering conditions, races are tolerated
 
         public StackConditionEntry(StackConditions.StackCondition<T> condition) {
             this.condition = condition;
@@ -380,15 +426,8 @@ public class EntityStackSettings extends StackSettings {
         public EntityStackComparisonResult apply(EntityStackSettings stackSettings, StackedEntity stack1,
                                                  StackedEntity stack2, Entity entity1, Entity entity2, boolean comparingForUnstack,
                                                  boolean ignorePositions) {
-            if (!this.enabled)
-                return EntityStackComparisonResult.CAN_STACK;
-
-            Class<?> requiredClass = this.condition.clazz();
-            if (!requiredClass.isAssignableFrom(entity1.getClass()) || !requiredClass.isAssignableFrom(entity2.getClass())) {
-                this.printWarning(entity1, entity2);
-                return EntityStackComparisonResult.DIFFERENT_ENTITY_TYPES;
-            }
-
+            // The condition was compiled for this EntityType and the cheap conditions already made sure both entities are
+            // of the same type, so no class checks are needed here
             try {
                 return this.condition.function().apply(stackSettings, stack1, stack2, (T) entity1, (T) entity2, comparingForUnstack, ignorePositions);
             } catch (ClassCastException e) {
@@ -397,6 +436,25 @@ public class EntityStackSettings extends StackSettings {
             }
         }
 
+        private void record(EntityStackComparisonResult result) {
+            this.evaluations++;
+            if (result != EntityStackComparisonResult.CAN_STACK)
+                this.rejections++;
+        }
+
+        private double getRejectionRate() {
+            int evaluations = this.evaluations;
+            return evaluations == 0 ? 0 : (double) this.rejections / evaluations;
+        }
+
+        /**
+         * Halves the counts so the order follows recent comparisons
+         */
+        private void decay() {
+            this.evaluations /= 2;
+            this.rejections /= 2;
+        }
+
         private void printWarning(Entity entity1, Entity entity2) {
             if (this.displayedWarning)
                 return;
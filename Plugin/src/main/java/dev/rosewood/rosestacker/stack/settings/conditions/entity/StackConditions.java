@@ -83,8 +83,8 @@ public final class StackConditions {
         ShearedHandler shearedHandler = CompatibilityAdapter.getShearedHandler();
         OldEnumHandler oldEnumHandler = CompatibilityAdapter.getOldEnumHandler();
 
-        // Register base Entity conditions
-        register(Entity.class, (stackSettings, stack1, stack2, entity1, entity2, comparingForUnstack, ignorePositions) -> {
+        // Register base Entity conditions, split by cost so the cheap checks can reject a pair before the expensive ones run
+        register(Entity.class, Cost.CHEAP, (stackSettings, stack1, stack2, entity1, entity2, comparingForUnstack, ignorePositions) -> {
             int offset = comparingForUnstack ? -1 : 0;
             if (entity1 == entity2) {
                 if (stack1.getStackSize() + 1 + offset > stackSettings.getMaxStackSize())
@@ -100,26 +100,18 @@ public final class StackConditions {
             if (!stackSettings.isStackingEnabled())
                 return EntityStackComparisonResult.STACKING_NOT_ENABLED;
 
-            if (PersistentDataUtils.isUnstackable(entity1) || PersistentDataUtils.isUnstackable(entity2))
-                return EntityStackComparisonResult.MARKED_UNSTACKABLE;
+            if (!comparingForUnstack && !ignorePositions && !stackSettings.getEntityTypeData().swimmingMob() && !stackSettings.getEntityTypeData().flyingMob()
+                    && SettingKey.ENTITY_ONLY_STACK_ON_GROUND.get() && (!stack1.isOnGround() || !stack2.isOnGround()))
+                return EntityStackComparisonResult.NOT_ON_GROUND;
+
+            return EntityStackComparisonResult.CAN_STACK;
+        });
 
+        register(Entity.class, Cost.NORMAL, (stackSettings, stack1, stack2, entity1, entity2, comparingForUnstack, ignorePositions) -> {
             if (SettingKey.ENTITY_DONT_STACK_CUSTOM_NAMED.get() && (entity1.getCustomName() != null || entity2.getCustomName() != null)
                     && (entity1.getType() != VersionUtils.SNOW_GOLEM || !stackSettings.getSettingValue(EntityStackSettings.SNOW_GOLEM_FORCE_CUSTOM_NAMED_STACKING).getBoolean())) // Force named snow golems to always stack together for infinite snowball lag-prevention reasons
                 return EntityStackComparisonResult.CUSTOM_NAMED;
 
-            if (!comparingForUnstack && !ignorePositions && !stackSettings.getEntityTypeData().swimmingMob() && !stackSettings.getEntityTypeData().flyingMob()) {
-                if (SettingKey.ENTITY_ONLY_STACK_ON_GROUND.get() && (!entity1.isOnGround() || !entity2.isOnGround()))
-                    return EntityStackComparisonResult.NOT_ON_GROUND;
-
-                if (SettingKey.ENTITY_DONT_STACK_IF_IN_WATER.get() &&
-                        (entity1.getLocation().getBlock().getType() == Material.WATER || entity2.getLocation().getBlock().getType() == Material.WATER))
-                    return EntityStackComparisonResult.IN_WATER;
-            }
-
-            if (!comparingForUnstack && stackSettings.shouldOnlyStackFromSpawners() &&
-                    (!PersistentDataUtils.isSpawnedFromSpawner(entity1) || !PersistentDataUtils.isSpawnedFromSpawner(entity2)))
-                return EntityStackComparisonResult.NOT_SPAWNED_FROM_SPAWNER;
-
             // Don't stack if being ridden or is riding something
             if (!comparingForUnstack && (!entity1.getPassengers().isEmpty() || !entity2.getPassengers().isEmpty() || entity1.isInsideVehicle() || entity2.isInsideVehicle()))
                 return EntityStackComparisonResult.PART_OF_VEHICLE; // If comparing for unstack and is being ridden or is riding something, don't want to unstack it
@@ -130,11 +122,30 @@ public final class StackConditions {
             return EntityStackComparisonResult.CAN_STACK;
         });
 
+        register(Entity.class, Cost.EXPENSIVE, (stackSettings, stack1, stack2, entity1, entity2, comparingForUnstack, ignorePositions) -> {
+            if (PersistentDataUtils.isUnstackable(entity1) || PersistentDataUtils.isUnstackable(entity2))
+                return EntityStackComparisonResult.MARKED_UNSTACKABLE;
+
+            if (!comparingForUnstack && !ignorePositions && !stackSettings.getEntityTypeData().swimmingMob() && !stackSettings.getEntityTypeData().flyingMob()
+                    && SettingKey.ENTITY_DONT_STACK_IF_IN_WATER.get() && (stack1.isInWater() || stack2.isInWater()))
+                return EntityStackComparisonResult.IN_WATER;
+
+            if (!comparingForUnstack && stackSettings.shouldOnlyStackFromSpawners() &&
+                    (!PersistentDataUtils.isSpawnedFromSpawner(entity1) || !PersistentDataUtils.isSpawnedFromSpawner(entity2)))
+                return EntityStackComparisonResult.NOT_SPAWNED_FROM_SPAWNER;
+
+            return EntityStackComparisonResult.CAN_STACK;
+        });
+
         // Register base LivingEntity conditions
-        register(LivingEntity.class, (stackSettings, stack1, stack2, entity1, entity2, comparingForUnstack, ignorePositions) -> {
+        register(LivingEntity.class, Cost.NORMAL, (stackSettings, stack1, stack2, entity1, entity2, comparingForUnstack, ignorePositions) -> {
             if (!comparingForUnstack && SettingKey.ENTITY_DONT_STACK_IF_LEASHED.get() && (entity1.isLeashed() || entity2.isLeashed()))
                 return EntityStackComparisonResult.LEASHED;
 
+            return EntityStackComparisonResult.CAN_STACK;
+        });
+
+        register(LivingEntity.class, Cost.EXPENSIVE, (stackSettings, stack1, stack2, entity1, entity2, comparingForUnstack, ignorePositions) -> {
             if (SettingKey.ENTITY_DONT_STACK_IF_HAS_EQUIPMENT.get()) {
                 EntityEquipment equipment1 = entity1.getEquipment();
                 EntityEquipment equipment2 = entity2.getEquipment();
@@ -166,7 +177,7 @@ public final class StackConditions {
         registerConfig(Colorable.class, "different-color", false, EntityStackComparisonResult.DIFFERENT_COLORS, (entity1, entity2) -> entity1.getColor() != entity2.getColor());
         registerConfig(Sittable.class, "sitting", false, EntityStackComparisonResult.SITTING, (entity1, entity2) -> entity1.isSitting() || entity2.isSitting());
         registerConfig(Tameable.class, "tamed", false, EntityStackComparisonResult.TAMED, (entity1, entity2) -> entity1.isTamed() || entity2.isTamed());
-        registerConfig(Tameable.class, "different-owners", false, EntityStackComparisonResult.DIFFERENT_OWNERS, (entity1, entity2) -> {
+        registerConfig(Tameable.class, "different-owners", false, Cost.EXPENSIVE, EntityStackComparisonResult.DIFFERENT_OWNERS, (entity1, entity2) -> {
             AnimalTamer tamer1 = entity1.getOwner();
             AnimalTamer tamer2 = entity2.getOwner();
             return tamer1 != null && tamer2 != null && !tamer1.getUniqueId().equals(tamer2.getUniqueId());
@@ -294,21 +305,47 @@ public final class StackConditions {
     }
 
     public static <T> void registerConfig(Class<T> assignableClass, String key, boolean defaultEnabled, EntityStackComparisonResult failureReason, StackValidationPredicate<T> validationPredicate) {
-        registerInternal(assignableClass, new ConfigProperties("dont-stack-if-" + key, defaultEnabled), (stackSettings, stack1, stack2, entity1, entity2, comparingForUnstack, ignorePositions)
+        registerConfig(assignableClass, key, defaultEnabled, Cost.NORMAL, failureReason, validationPredicate);
+    }
+
+    public static <T> void registerConfig(Class<T> assignableClass, String key, boolean defaultEnabled, Cost cost, EntityStackComparisonResult failureReason, StackValidationPredicate<T> validationPredicate) {
+        registerInternal(assignableClass, new ConfigProperties("dont-stack-if-" + key, defaultEnabled), cost, (stackSettings, stack1, stack2, entity1, entity2, comparingForUnstack, ignorePositions)
                 -> validationPredicate.test(entity1, entity2) ? failureReason : EntityStackComparisonResult.CAN_STACK);
     }
 
     public static <T> void register(Class<T> assignableClass, StackValidationFunction<T> validationFunction) {
-        registerInternal(assignableClass, null, validationFunction);
+        register(assignableClass, Cost.NORMAL, validationFunction);
     }
 
-    private static <T, P extends StackValidationFunction<T>> void registerInternal(Class<T> assignableClass, ConfigProperties configProperties, P validationFunction) {
-        CLASS_STACK_EVALUATION_MAP.put(assignableClass, new StackCondition<>(assignableClass, configProperties, validationFunction));
+    public static <T> void register(Class<T> assignableClass, Cost cost, StackValidationFunction<T> validationFunction) {
+        registerInternal(assignableClass, null, cost, validationFunction);
+    }
+
+    private static <T, P extends StackValidationFunction<T>> void registerInternal(Class<T> assignableClass, ConfigProperties configProperties, Cost cost, P validationFunction) {
+        CLASS_STACK_EVALUATION_MAP.put(assignableClass, new StackCondition<>(assignableClass, configProperties, cost, validationFunction));
     }
 
     public record ConfigProperties(String key, boolean defaultValue) { }
 
-    public record StackCondition<T>(Class<T> clazz, ConfigProperties configProperties, StackValidationFunction<T> function) { }
+    public record StackCondition<T>(Class<T> clazz, ConfigProperties configProperties, Cost cost, StackValidationFunction<T> function) { }
+
+    /**
+     * How expensive a condition is to check, cheaper conditions are checked first
+     */
+    public enum Cost {
+        /**
+         * Only reads stack sizes, entity types, settings or snapshot state
+         */
+        CHEAP,
+        /**
+         * Reads simple properties of the entities
+         */
+        NORMAL,
+        /**
+         * Looks up blocks, equipment, persistent data or other players
+         */
+        EXPENSIVE
+    }
 
     @FunctionalInterface
     public interface StackValidationFunction<T> {
@@ -4,22 +4,17 @@ import dev.rosewood.rosestacker.RoseStacker;
 import dev.rosewood.rosestacker.config.SettingKey;
 import dev.rosewood.rosestacker.manager.EntityCacheManager;
 import dev.rosewood.rosestacker.manager.LocaleManager;
-import dev.rosewood.rosestacker.manager.StackManager;
-import dev.rosewood.rosestacker.stack.StackedEntity;
 import dev.rosewood.rosestacker.stack.StackedSpawner;
 import dev.rosewood.rosestacker.stack.settings.SpawnerStackSettings;
 import dev.rosewood.rosestacker.stack.settings.conditions.spawner.ConditionTag;
-import java.util.Collection;
 import java.util.List;
+import org.bukkit.Location;
 import org.bukkit.block.Block;
-import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
-import org.bukkit.entity.LivingEntity;
 
 public class MaxNearbyEntityConditionTag extends ConditionTag {
 
     private int maxNearbyEntities;
-    private StackManager stackManager;
     private EntityCacheManager entityCacheManager;
 
     public MaxNearbyEntityConditionTag(String tag) {
@@ -28,28 +23,19 @@ public class MaxNearbyEntityConditionTag extends ConditionTag {
 
     @Override
     public boolean check(StackedSpawner stackedSpawner, Block spawnBlock) {
-        if (this.stackManager == null || this.entityCacheManager == null) {
-            this.stackManager = RoseStacker.getInstance().getManager(StackManager.class);
+        if (this.entityCacheManager == null)
             this.entityCacheManager = RoseStacker.getInstance().getManager(EntityCacheManager.class);
-        }
 
         SpawnerStackSettings stackSettings = stackedSpawner.getStackSettings();
         int detectionRange = stackSettings.getEntitySearchRange() == -1 ? stackedSpawner.getSpawnerTile().getSpawnRange() : stackSettings.getEntitySearchRange();
         Block block = stackedSpawner.getBlock();
         List<EntityType> entityTypes = stackedSpawner.getSpawnerTile().getSpawnerType().getEntityTypes();
 
-        Collection<Entity> nearbyEntities = this.entityCacheManager.getNearbyEntities(
-                block.getLocation().clone().add(0.5, 0.5, 0.5),
-                detectionRange,
-                entity -> entityTypes.contains(entity.getType()));
-
+        Location center = block.getLocation().clone().add(0.5, 0.5, 0.5);
         if (SettingKey.SPAWNER_MAX_NEARBY_ENTITIES_INCLUDE_STACKS.get()) {
-            return nearbyEntities.stream().mapToInt(x -> {
-                StackedEntity stackedEntity = this.stackManager.getStackedEntity((LivingEntity) x);
-                return stackedEntity == null ? 1 : stackedEntity.getStackSize();
-            }).sum() < this.maxNearbyEntities;
+            return this.entityCacheManager.sumStackSizesNearby(center, detectionRange, entityTypes) < this.maxNearbyEntities;
         } else {
-            return nearbyEntities.size() < this.maxNearbyEntities;
+            return this.entityCacheManager.countNearby(center, detectionRange, entityTypes, entity -> true) < this.maxNearbyEntities;
         }
     }
 
@@ -3,6 +3,8 @@ package dev.rosewood.rosestacker.utils;
 import dev.rosewood.rosegarden.RosePlugin;
 import dev.rosewood.rosegarden.scheduler.RoseScheduler;
 import dev.rosewood.rosestacker.RoseStacker;
+import dev.rosewood.rosestacker.manager.ExecutorManager;
+import dev.rosewood.rosestacker.manager.ExecutorManager.Pool;
 import org.bukkit.Bukkit;
 
 public final class ThreadUtils {
@@ -45,6 +47,17 @@ public final class ThreadUtils {
             SCHEDULER.runTaskAsync(runnable);
     }
 
+    /**
+     * Runs a task on the dedicated executor of a pool, or on the async scheduler if dedicated executors are disabled
+     *
+     * @param pool The pool to run the task in
+     * @param runnable The task to run
+     */
+    public static void runAsync(Pool pool, Runnable runnable) {
+        if (checkEnabled() && !PLUGIN.getManager(ExecutorManager.class).execute(pool, runnable))
+            SCHEDULER.runTaskAsync(runnable);
+    }
+
     public static void runAsyncDelayed(Runnable runnable, long delay) {
         if (checkEnabled())
             SCHEDULER.runTaskLaterAsync(runnable, delay);